@@ -0,0 +1,149 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.function.LongSupplier;
+
+import mobileagents.bench.Simulator;
+
+/**
+ * Lets the benchmarks reach the simulator, see Simulator.
+ *
+ * Lives in the default package like the simulator, so it can use the
+ * package private parts of it.
+ */
+public class SimulatorBridge implements Simulator {
+
+    @Override
+    public Model load(File file) throws IOException {
+        return new LoadedGraph(Graph.load(file));
+    }
+
+    @Override
+    public Model parse(File file) throws IOException {
+        return new LoadedGraph(GraphParser.parse(file));
+    }
+
+    @Override
+    public void generate(String type, int nodes, long seed, File file) throws IOException {
+        GraphGen gen = new GraphGen(new FileOutputStream(file), nodes, seed);
+        try {
+            gen.generate(type);
+        } finally {
+            gen.close();
+        }
+    }
+
+    /**
+     * Topology that new simulations are built from
+     */
+    private static class LoadedGraph implements Model {
+
+        private final Topology topology;
+
+
+        LoadedGraph(Topology topology) {
+            this.topology = topology;
+        }
+
+        @Override
+        public int getNodeCount() {
+            return topology.getNodeCount();
+        }
+
+        @Override
+        public Router router(boolean table) {
+            Graph graph = new Graph(topology);
+            graph.setRoutingMode(table ? RoutingMode.TABLE : RoutingMode.SEARCH);
+            return new PacketRouter(graph);
+        }
+
+        @Override
+        public LongSupplier fire(long seed) {
+            Graph graph = new Graph(topology);
+            graph.getContext().setSeed(seed);
+            EventSimulation simulation = new EventSimulation(graph);
+            simulation.deploy();
+            return () -> {
+                simulation.run();
+                return simulation.getProcessed();
+            };
+        }
+    }
+
+    /**
+     * Routes packets from the node the most hops away from the station
+     */
+    private static class PacketRouter implements Router {
+
+        // Every packet says the same, so the station only remembers one
+        private static final String MESSAGE = "Benchmark report";
+
+        private final GraphNode source;
+        private Packet packet;
+        private GraphNode at;
+
+
+        PacketRouter(Graph graph) {
+            this.source = farthest(graph.getStation());
+        }
+
+        @Override
+        public int route() {
+            Packet p = newPacket();
+            GraphNode node = source;
+            int hops = 0;
+            while ((node = node.route(p)) != null) hops++;
+            return hops;
+        }
+
+        @Override
+        public boolean hop() {
+            if (packet == null) {
+                packet = newPacket();
+                at = source;
+            }
+
+            at = at.route(packet);
+            if (at == null) {
+                packet = null;
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Creates a report at the source
+         *
+         * @return Packet
+         */
+        private Packet newPacket() {
+            return new Packet(MESSAGE, false, source, source.getContext().nextPacketId());
+        }
+
+        /**
+         * Breadth first search from the station
+         *
+         * @param station Base station
+         * @return Last node reached, the station itself if it has no neighbors
+         */
+        private static GraphNode farthest(GraphNode station) {
+            NodeSet seen = new NodeSet();
+            ArrayDeque<GraphNode> queue = new ArrayDeque<>();
+            seen.add(station.getId());
+            queue.add(station);
+
+            GraphNode last = station;
+            while (!queue.isEmpty()) {
+                last = queue.poll();
+                for (GraphNode n : last.getAdjacentNodes()) {
+                    if (!seen.contains(n.getId())) {
+                        seen.add(n.getId());
+                        queue.add(n);
+                    }
+                }
+            }
+            return last;
+        }
+    }
+}
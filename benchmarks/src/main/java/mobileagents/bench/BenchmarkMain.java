@@ -0,0 +1,38 @@
+package mobileagents.bench;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks like the JMH command line does, with other defaults:
+ * the results are written to jmh-result.json and the GC profiler is on, so
+ * every benchmark also reports how much it allocates per operation.
+ *
+ * Every JMH option still works, for example -rf csv or -prof stack, and
+ * a pattern picks the benchmarks: java -jar benchmarks.jar Routing
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+
+        // Help and the listings are left to JMH
+        if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams()
+                || options.shouldListProfilers() || options.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+        if (!options.getResultFormat().hasValue()) builder.resultFormat(ResultFormatType.JSON);
+        if (!options.getResult().hasValue()) builder.result("jmh-result.json");
+        if (options.getProfilers().isEmpty()) builder.addProfiler(GCProfiler.class);
+
+        new Runner(builder.build()).run();
+    }
+}
@@ -0,0 +1,64 @@
+package mobileagents.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time for a whole fire to burn out with the event simulation, from the
+ * deployment of the first agent to the last packet. Every run starts on a
+ * fresh graph, building it is not measured, and every run is seeded the same
+ * so each one burns the same way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class FireBenchmark {
+
+    @Param({"BaseStationCenter.txt", "BottleNeck.txt", "GraphTestTwo.txt", "Star.txt",
+            "TestForLock.txt", "VerticalHourGlass.txt", "fireNextToBaseStation.txt",
+            "graph.txt", "graph1.txt", "graphgen.txt", "lol.txt", "sample.txt",
+            "sample2.txt", "simple.txt", "skew.txt", "grid-10000"})
+    public String graph;
+
+    // Seed of every run
+    private static final long SEED = 1;
+
+    private Simulator.Model model;
+    private LongSupplier fire;
+
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        model = Simulator.get().load(Graphs.file(graph));
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        fire = model.fire(SEED);
+    }
+
+    /**
+     * Burns the graph down
+     */
+    @Benchmark
+    public long propagate() {
+        return fire.getAsLong();
+    }
+}
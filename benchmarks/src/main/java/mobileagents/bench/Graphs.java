@@ -0,0 +1,78 @@
+package mobileagents.bench;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Finds the graph files the benchmarks are run on.
+ *
+ * A name like "sample.txt" is a file in the resources folder of the project,
+ * set with -Dresources=DIR when the benchmarks are not run from the project
+ * folder. A name like "grid-10000" or "scalefree-100000" is a graph of GraphGen
+ * with that many nodes, written to the temp folder the first time it is asked
+ * for and reused by every later fork.
+ */
+final class Graphs {
+
+    // Seed of the synthetic graphs
+    private static final long SEED = 1;
+
+    private Graphs() {
+    }
+
+    /**
+     * Gets the file of a benchmark graph
+     *
+     * @param name File in the resources folder or TYPE-NODES
+     * @return Graph file
+     * @throws IOException If the file does not exist or the graph can not be
+     *                     written
+     */
+    static File file(String name) throws IOException {
+        int dash = name.lastIndexOf('-');
+        if (!name.endsWith(".txt") && dash > 0) {
+            return generated(name.substring(0, dash), Integer.parseInt(name.substring(dash + 1)));
+        }
+
+        File file = new File(resources(), name);
+        if (!file.isFile()) throw new FileNotFoundException(file.getAbsolutePath());
+        return file;
+    }
+
+    /**
+     * Gets the resources folder of the project
+     *
+     * @return Folder with the sample graphs
+     */
+    private static File resources() {
+        String dir = System.getProperty("resources");
+        if (dir != null) return new File(dir);
+
+        // Run from the project or from the benchmarks module
+        File here = new File("resources");
+        return here.isDirectory() ? here : new File("../resources");
+    }
+
+    /**
+     * Gets a graph of GraphGen, always with the same seed
+     *
+     * @param type Graph type of GraphGen
+     * @param nodes Amount of nodes
+     * @return Graph file
+     * @throws IOException If the graph can not be written
+     */
+    private static synchronized File generated(String type, int nodes) throws IOException {
+        File file = new File(System.getProperty("java.io.tmpdir"),
+                "mobile-agents-" + type + "-" + nodes + "-" + SEED + ".txt");
+        if (file.isFile()) return file;
+
+        // Written next to the file and moved, so a fork never sees half a graph
+        File part = File.createTempFile("mobile-agents-", ".part", file.getParentFile());
+        Simulator.get().generate(type, nodes, SEED, part);
+        Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+}
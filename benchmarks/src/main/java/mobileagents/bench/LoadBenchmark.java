@@ -0,0 +1,64 @@
+package mobileagents.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to load every sample graph and synthetic graphs of GraphGen, with the
+ * loader of the simulator and with the single threaded parser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+
+    @Param({"BaseStationCenter.txt", "BottleNeck.txt", "GraphTestTwo.txt", "Star.txt",
+            "TestForLock.txt", "VerticalHourGlass.txt", "fireNextToBaseStation.txt",
+            "graph.txt", "graph1.txt", "graphgen.txt", "lol.txt", "sample.txt",
+            "sample2.txt", "simple.txt", "skew.txt",
+            "grid-10000", "grid-100000", "grid-1000000", "geometric-100000",
+            "scalefree-100000", "smallworld-100000", "hourglass-100000"})
+    public String graph;
+
+    private Simulator simulator;
+    private File file;
+
+
+    @Setup
+    public void setUp() throws IOException {
+        simulator = Simulator.get();
+        file = Graphs.file(graph);
+    }
+
+    /**
+     * Graph.load, the way the simulator reads its graphs
+     */
+    @Benchmark
+    public Simulator.Model load() throws IOException {
+        return simulator.load(file);
+    }
+
+    /**
+     * GraphParser on the calling thread only
+     */
+    @Benchmark
+    public Simulator.Model parse() throws IOException {
+        return simulator.parse(file);
+    }
+}
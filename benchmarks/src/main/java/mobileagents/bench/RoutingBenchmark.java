@@ -0,0 +1,65 @@
+package mobileagents.bench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of a single packet from the node farthest from the base station,
+ * with both routing modes and no fire.
+ *
+ * hop moves a packet by one edge, so with the GC profiler on (the default of
+ * BenchmarkMain) gc.alloc.rate.norm is the allocation per hop. It includes
+ * the packet itself once per route.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingBenchmark {
+
+    @Param({"sample.txt", "graph.txt", "TestForLock.txt", "lol.txt", "grid-10000"})
+    public String graph;
+
+    @Param({"search", "table"})
+    public String routing;
+
+    private Simulator.Router router;
+
+
+    @Setup
+    public void setUp() throws IOException {
+        Simulator.Model model = Simulator.get().load(Graphs.file(graph));
+        router = model.router(routing.equals("table"));
+    }
+
+    /**
+     * Sends one packet all the way to the station
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int route() {
+        return router.route();
+    }
+
+    /**
+     * Moves a packet by one hop
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean hop() {
+        return router.hop();
+    }
+}
@@ -0,0 +1,114 @@
+package mobileagents.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.function.LongSupplier;
+
+/**
+ * What the benchmarks need from the simulator.
+ *
+ * The simulator lives in the default package, which a named package can not
+ * import, and JMH only generates code for benchmarks in a named package. So
+ * the benchmarks only talk to these interfaces, and SimulatorBridge in the
+ * default package implements them.
+ */
+public interface Simulator {
+
+    /**
+     * Gets the bridge to the simulator
+     *
+     * @return Simulator
+     */
+    static Simulator get() {
+        try {
+            return (Simulator) Class.forName("SimulatorBridge")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("SimulatorBridge is missing", e);
+        }
+    }
+
+    /**
+     * Loads a graph the way the simulator does, mapped if it is binary and
+     * parsed in parallel if it is text
+     *
+     * @param file Graph file
+     * @return Loaded graph
+     * @throws IOException If the file can not be read or is malformed
+     */
+    Model load(File file) throws IOException;
+
+    /**
+     * Parses a text graph on the calling thread only
+     *
+     * @param file Graph file
+     * @return Loaded graph
+     * @throws IOException If the file can not be read or is malformed
+     */
+    Model parse(File file) throws IOException;
+
+    /**
+     * Writes a synthetic graph with GraphGen
+     *
+     * @param type Graph type, such as grid or scalefree
+     * @param nodes Amount of nodes
+     * @param seed Seed of the generator
+     * @param file File to write
+     * @throws IOException If the file can not be written
+     */
+    void generate(String type, int nodes, long seed, File file) throws IOException;
+
+    /**
+     * A loaded graph, nothing is running on it
+     */
+    interface Model {
+
+        /**
+         * Gets the amount of nodes
+         *
+         * @return Node count
+         */
+        int getNodeCount();
+
+        /**
+         * Creates a fresh simulation of the graph that sends packets from
+         * the node farthest from the base station
+         *
+         * @param table true to route with the routing table, false to search
+         *              with receipts
+         * @return Router of the new simulation
+         */
+        Router router(boolean table);
+
+        /**
+         * Creates a fresh event simulation of the graph with its first agent
+         * deployed. The same seed always gives the same run.
+         *
+         * @param seed Seed of the random choices of the simulation
+         * @return Runs the fire until it is out and gives back the amount of
+         *         events
+         */
+        LongSupplier fire(long seed);
+    }
+
+    /**
+     * Sends packets to the base station one after another
+     */
+    interface Router {
+
+        /**
+         * Sends a new packet all the way
+         *
+         * @return Hops it took
+         */
+        int route();
+
+        /**
+         * Moves the current packet one hop, a new packet is started once the
+         * last one is done
+         *
+         * @return true if the packet moved, false if it was done
+         */
+        boolean hop();
+    }
+}
@@ -0,0 +1,89 @@
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the agents whose node has burnt down so clones can reuse them
+ * instead of allocating new ones.
+ *
+ * The free agents are kept in a fixed array used as a stack, so putting one
+ * back does not allocate anything. Agents only come and go when a node
+ * changes status, so one lock is not contended.
+ *
+ * Only for observers that do not hold on to agents after they die, the GUI
+ * keeps a shape per agent so it runs without a pool.
+ */
+public class AgentPool {
+
+    // Agents kept by default
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    // Private variables
+    private final MobileAgent[] free;
+    private int size = 0;
+    private long reused = 0;
+
+    // Lock instead of the monitor so virtual threads are not pinned
+    private final ReentrantLock lock = new ReentrantLock();
+
+
+    /**
+     * Creates a pool keeping up to DEFAULT_CAPACITY agents
+     */
+    AgentPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a pool
+     *
+     * @param capacity Most agents kept at once, the rest is left to the GC
+     */
+    AgentPool(int capacity) {
+        this.free = new MobileAgent[capacity];
+    }
+
+    /**
+     * Takes a free agent out of the pool
+     *
+     * @return Agent to reuse, null if the pool is empty
+     */
+    public MobileAgent acquire() {
+        lock.lock();
+        try {
+            if (size == 0) return null;
+            MobileAgent agent = free[--size];
+            free[size] = null;
+            reused++;
+            return agent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts an agent that is done back into the pool
+     *
+     * @param agent Agent without a node
+     */
+    public void release(MobileAgent agent) {
+        lock.lock();
+        try {
+            if (size < free.length) free[size++] = agent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets how often an agent was reused
+     *
+     * @return Count of agents taken out of the pool
+     */
+    public long getReused() {
+        lock.lock();
+        try {
+            return reused;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,24 +1,124 @@
-import javafx.collections.ObservableList;
-import javafx.scene.Node;
-import javafx.scene.control.Label;
-import javafx.scene.layout.VBox;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import javafx.scene.control.ListView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Display the Base Station log
+ *
+ * The newest messages are shown first and only the last CAPACITY are kept,
+ * in a ring buffer behind a ListView that only creates cells for the rows
+ * on screen. Messages can be added from any thread, they are queued and all
+ * of them are shown with a single Platform.runLater.
  */
-public class BaseStationLog extends VBox {
+public class BaseStationLog extends ListView<String> {
+
+    // Amount of messages kept in the log
+    public static final int CAPACITY = 5000;
+
+    // Private variables
+    private final Messages messages = new Messages(CAPACITY);
+    private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
 
-    ObservableList<Node> list = getChildren();
 
     BaseStationLog(){
-        setSpacing(10);
+        setItems(messages);
+        setFocusTraversable(false);
     }
 
     /**
-     * Displays message on GUI
+     * Displays message on GUI, can be called from any thread
      * @param message Message
      */
     public void addMessage(String message){
-        list.add(0, new Label(message));
+        pending.add(message);
+
+        // Only the first message of a batch posts the drain
+        if (scheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::drain);
+        }
+    }
+
+    /**
+     * Moves every queued message into the list, on the JavaFX thread
+     */
+    private void drain() {
+        // Cleared first, a message queued from now on posts a new drain
+        scheduled.set(false);
+
+        List<String> batch = new ArrayList<>();
+        String message;
+        while ((message = pending.poll()) != null) batch.add(message);
+        if (!batch.isEmpty()) messages.addNewest(batch);
+    }
+
+    /**
+     * Bounded list of messages, newest first, stored in a ring buffer
+     */
+    private static class Messages extends ObservableListBase<String> {
+
+        private final String[] ring;
+        private int head = 0;
+        private int size = 0;
+
+
+        Messages(int capacity) {
+            ring = new String[capacity];
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            int slot = head - 1 - index;
+            return ring[slot < 0 ? slot + ring.length : slot];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Adds messages in the order they came, the oldest ones fall off the
+         * end once the ring is full. Fires a single change for the batch.
+         *
+         * @param batch Messages, oldest first
+         */
+        void addNewest(List<String> batch) {
+            // Only the newest messages of a large batch can be kept
+            int from = Math.max(0, batch.size() - ring.length);
+            int added = batch.size() - from;
+            int evicted = Math.max(0, size + added - ring.length);
+
+            beginChange();
+            try {
+                if (evicted > 0) {
+                    String[] removed = new String[evicted];
+                    for (int i = 0; i < evicted; i++) {
+                        removed[i] = get(size - evicted + i);
+                    }
+                    size -= evicted;
+                    nextRemove(size, Arrays.asList(removed));
+                }
+
+                for (int i = from; i < batch.size(); i++) {
+                    ring[head] = batch.get(i);
+                    head = (head + 1) % ring.length;
+                }
+                size += added;
+                nextAdd(0, added);
+            } finally {
+                endChange();
+            }
+        }
     }
 }
@@ -0,0 +1,233 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary graph format that is opened with a memory mapping instead of being
+ * parsed. The file is the Topology arrays as they are in memory, all little
+ * endian ints:
+ *
+ * magic, version, node count, target count, station, fire count
+ * xs[node count]
+ * ys[node count]
+ * offsets[node count + 1]
+ * targets[target count]
+ * fires[fire count]
+ *
+ * Every section is mapped on its own and handed to the Topology as an
+ * IntBuffer, so opening a graph costs about the same whatever its size and
+ * pages are only read when they are used.
+ *
+ * Run it as a program to convert text graphs:
+ * java BinaryGraphFile graph.txt graph.bin
+ */
+public class BinaryGraphFile {
+
+    // "GRPH" in ASCII, the first four bytes of every binary graph
+    public static final int MAGIC = 0x48505247;
+    public static final int VERSION = 1;
+
+    // Size of the header in bytes
+    private static final int HEADER_SIZE = 6 * 4;
+
+    // Size of the write buffer in bytes
+    private static final int BUFFER_SIZE = 1 << 16;
+
+
+    /**
+     * Checks if a file starts with the binary graph magic
+     *
+     * @param file File to check
+     * @return true if it is a binary graph
+     * @throws IOException If the file can not be read
+     */
+    public static boolean isBinary(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.length() < 4) return false;
+            return Integer.reverseBytes(in.readInt()) == MAGIC;
+        }
+    }
+
+    /**
+     * Maps a binary graph file
+     *
+     * @param file File to open
+     * @return Topology backed by the mapped file
+     * @throws IOException If the file can not be read or is malformed
+     */
+    public static Topology open(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             FileChannel channel = in.getChannel()) {
+
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                throw new IOException(file + " is too short for a binary graph");
+            }
+            IntBuffer header = map(channel, 0, 6);
+            if (header.get(0) != MAGIC) {
+                throw new IOException(file + " is not a binary graph");
+            }
+            if (header.get(1) != VERSION) {
+                throw new IOException(file + " has unknown version " + header.get(1));
+            }
+
+            int nodes = header.get(2);
+            int targets = header.get(3);
+            int station = header.get(4);
+            int fireCount = header.get(5);
+
+            // The sections must fill the file exactly
+            long ints = 3L * nodes + 1 + targets + fireCount;
+            if (nodes < 0 || targets < 0 || fireCount < 0
+                    || HEADER_SIZE + ints * 4 != length) {
+                throw new IOException(file + " has a bad size for its header");
+            }
+            if (station < -1 || station >= nodes) {
+                throw new IOException(file + " has a bad station " + station);
+            }
+
+            long position = HEADER_SIZE;
+            IntBuffer xs = map(channel, position, nodes);
+            position += 4L * nodes;
+            IntBuffer ys = map(channel, position, nodes);
+            position += 4L * nodes;
+            IntBuffer offsets = map(channel, position, nodes + 1);
+            position += 4L * (nodes + 1);
+            IntBuffer neighbors = map(channel, position, targets);
+            position += 4L * targets;
+
+            // The fires are few, they are copied out
+            int[] fires = new int[fireCount];
+            map(channel, position, fireCount).get(fires);
+
+            // Cheap checks that the sections fit together. The rows and
+            // neighbors themselves are not read, that would read the whole
+            // file the mapping is there to avoid.
+            for (int fire : fires) {
+                if (fire < 0 || fire >= nodes) {
+                    throw new IOException(file + " has a bad fire " + fire);
+                }
+            }
+            if (offsets.get(0) != 0 || offsets.get(nodes) != targets) {
+                throw new IOException(file + " has bad offsets");
+            }
+
+            return new Topology(xs, ys, offsets, neighbors, station, fires);
+        }
+    }
+
+    /**
+     * Writes a topology as a binary graph
+     *
+     * @param topology Topology to write
+     * @param file File to write to, replaced if it exists
+     * @throws IOException If the file can not be written
+     */
+    public static void write(Topology topology, File file) throws IOException {
+        int nodes = topology.getNodeCount();
+        int targets = topology.getEdgeCount() * 2;
+        int[] fires = topology.getFires();
+
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw");
+             FileChannel channel = out.getChannel()) {
+            channel.truncate(0);
+
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(nodes).putInt(targets)
+                  .putInt(topology.getStation()).putInt(fires.length);
+
+            for (int i = 0; i < nodes; i++) {
+                put(channel, buffer, topology.getX(i));
+            }
+            for (int i = 0; i < nodes; i++) {
+                put(channel, buffer, topology.getY(i));
+            }
+            for (int i = 0; i < nodes; i++) {
+                put(channel, buffer, topology.getStart(i));
+            }
+            put(channel, buffer, targets);
+            for (int i = 0; i < targets; i++) {
+                put(channel, buffer, topology.getTarget(i));
+            }
+            for (int fire : fires) {
+                put(channel, buffer, fire);
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Maps a section of ints of the file
+     *
+     * @param channel Channel of the file
+     * @param position Byte offset of the section
+     * @param count Amount of ints in the section
+     * @return Read only view of the section
+     * @throws IOException If the mapping fails
+     */
+    private static IntBuffer map(FileChannel channel, long position, int count)
+            throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * count)
+                      .order(ByteOrder.LITTLE_ENDIAN)
+                      .asIntBuffer();
+    }
+
+    /**
+     * Adds an int to the write buffer, writing it out when it is full
+     *
+     * @param channel Channel of the file
+     * @param buffer Write buffer
+     * @param value Value to add
+     * @throws IOException If the file can not be written
+     */
+    private static void put(FileChannel channel, ByteBuffer buffer, int value)
+            throws IOException {
+        if (buffer.remaining() < 4) flush(channel, buffer);
+        buffer.putInt(value);
+    }
+
+    /**
+     * Writes out everything in the buffer
+     *
+     * @param channel Channel of the file
+     * @param buffer Write buffer
+     * @throws IOException If the file can not be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Converts a text graph to a binary graph
+     *
+     * @param args Text file to read and binary file to write
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java BinaryGraphFile graph.txt graph.bin");
+            System.exit(2);
+        }
+
+        File in = new File(args[0]);
+        File out = new File(args[1]);
+        try {
+            long start = System.nanoTime();
+            Topology topology = GraphParser.parse(in);
+            write(topology, out);
+            long millis = (System.nanoTime() - start) / 1000000;
+            System.out.println(out + ": " + topology.getNodeCount() + " nodes, "
+                    + topology.getEdgeCount() + " edges, " + out.length()
+                    + " bytes, " + millis + " ms");
+        } catch (IOException e) {
+            System.err.println(in + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -34,6 +34,27 @@ public class Coordinate {
     }
 
 
+    /**
+     * Packs a location into a single long, x in the high half and y in the
+     * low half. Used as an allocation free key, see CoordinateMap.
+     *
+     * @param x x-Coordinate
+     * @param y y-Coordinate
+     * @return Packed coordinate
+     */
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the packed form of this coordinate
+     *
+     * @return Packed coordinate, see pack
+     */
+    public long getKey() {
+        return pack(x, y);
+    }
+
     /**
      * Get the X coordinate
      *
@@ -70,22 +91,18 @@ public class Coordinate {
      */
     @Override
     public boolean equals(Object obj) {
+        if (!(obj instanceof Coordinate)) return false;
         Coordinate coord = (Coordinate) obj;
-        if (coord != null && x == coord.getX() && y == coord.getY()) {
-            return true;
-        } else {
-            return false;
-        }
+        return x == coord.x && y == coord.y;
     }
 
     /**
-     * For simplicity with the Map, the hashcode of the to String method will
-     * give the best results
+     * Hash straight from the two integers, without building a String
      *
      * @return integer value of the hash
      */
     @Override
     public int hashCode() {
-        return toString().hashCode();
+        return 31 * x + y;
     }
 }
@@ -0,0 +1,106 @@
+import java.util.Arrays;
+
+/**
+ * Map from packed coordinates (see Coordinate.pack) to node IDs.
+ *
+ * Open addressing over a long and an int array, so neither lookups nor
+ * inserts allocate anything, unlike a HashMap with Coordinate keys and
+ * Integer values.
+ */
+public class CoordinateMap {
+
+    // Value returned for missing keys
+    public static final int MISSING = -1;
+
+    // Private variables
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+
+    /**
+     * Creates an empty map
+     *
+     * @param expected Expected amount of entries, to size the table
+     */
+    CoordinateMap(int expected) {
+        int capacity = 16;
+        while (capacity < expected * 2) capacity <<= 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+    }
+
+    /**
+     * Gets the node ID of a coordinate
+     *
+     * @param key Packed coordinate
+     * @return Node ID, MISSING if not in the map
+     */
+    public int get(long key) {
+        return values[find(key)];
+    }
+
+    /**
+     * Puts the node ID of a coordinate in the map
+     *
+     * @param key Packed coordinate
+     * @param value Node ID, not negative
+     */
+    public void put(long key, int value) {
+        int slot = find(key);
+        if (values[slot] == MISSING) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+
+        // Keep the table at most half full
+        if (size * 2 > keys.length) grow();
+    }
+
+    /**
+     * Gets the amount of entries
+     *
+     * @return Count of coordinates in the map
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the slot of a key, or the free slot where it would go
+     *
+     * @param key Packed coordinate
+     * @return Slot in the table
+     */
+    private int find(long key) {
+        int mask = keys.length - 1;
+        long hash = key * 0x9E3779B97F4A7C15L;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (values[slot] != MISSING && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the table and puts every entry back in
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(values, MISSING);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+import java.util.PriorityQueue;
+
+/**
+ * Discrete event version of the simulation.
+ *
+ * Instead of one thread per GraphNode and MobileAgent, every action is a
+ * timestamped event in a priority queue and all of them run on the calling
+ * thread. The clock is virtual, it jumps straight to the next event, so a
+ * fire that takes minutes on the threaded version is done in milliseconds.
+ *
+ * The rules are the same as GraphNode.run and MobileAgent.run:
+ * - a node in danger catches fire after GraphNode.burnDelay
+ * - a burning node puts its GREEN neighbors in danger
+ * - an agent reports on arrival, clones itself and reports once its node is
+ *   in danger, and reports one last time when its node burns
+ * - packets are routed hop by hop with GraphNode.route
+ *
+ * The simulation is the time source of its graph's context, so observers
+ * and traces see the virtual time of the event being processed. It is not a
+ * SimulationClock, nothing in it sleeps.
+ */
+public class EventSimulation {
+
+    // Virtual time it takes a packet to move over one edge, in milliseconds
+    private static final long HOP_DELAY = 1;
+
+    // Private variables
+    private Graph graph;
+    private PriorityQueue<Event> queue = new PriorityQueue<>();
+    private long time = 0;
+    private long sequence = 0;
+    private long processed = 0;
+
+
+    /**
+     * Creates the simulation of the given graph
+     *
+     * @param graph Graph, as read in from the file
+     */
+    EventSimulation(Graph graph) {
+        this.graph = graph;
+        graph.getContext().setTimeSource(this::now);
+
+        // Nodes that are already in danger or burning pick up from there
+        for (GraphNode node : graph.getNodes()) {
+            if (node.getStatus() == NodeStatus.YELLOW) {
+                schedule(node.burnDelay(), () -> burn(node));
+            } else if (node.getStatus() == NodeStatus.RED) {
+                schedule(0, () -> spread(node));
+            }
+        }
+    }
+
+    /**
+     * Places the first agent on the base station, which walks to the fire
+     *
+     * @throws IllegalStateException If the graph has no base station
+     */
+    public void deploy() {
+        if (graph.getStation() == null) throw new IllegalStateException("the graph has no station");
+        MobileAgent agent = new MobileAgent(graph.getStation(), true, false);
+        schedule(0, () -> arrive(agent));
+    }
+
+    /**
+     * Runs events until there are none left
+     *
+     * @return Virtual time at which the last event happened
+     */
+    public long run() {
+        Event event;
+        while ((event = queue.poll()) != null) {
+            time = event.time;
+            processed++;
+            event.action.run();
+        }
+        return time;
+    }
+
+    /**
+     * Gets the current virtual time
+     *
+     * @return Time in milliseconds since the start
+     */
+    public long now() {
+        return time;
+    }
+
+    /**
+     * Gets the amount of events that have been run
+     *
+     * @return Count of events
+     */
+    public long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * Schedules an action to happen after the given virtual delay
+     *
+     * @param delay Delay in milliseconds, 0 for right after the current event
+     * @param action Action to run
+     */
+    public void schedule(long delay, Runnable action) {
+        queue.add(new Event(time + delay, sequence++, action));
+    }
+
+    /**
+     * A GREEN node is put in danger and will burn after the delay
+     *
+     * @param node Node next to the fire
+     */
+    private void ignite(GraphNode node) {
+        if (!node.compareAndSetStatus(NodeStatus.GREEN, NodeStatus.YELLOW)) return;
+
+        schedule(node.burnDelay(), () -> burn(node));
+
+        // Agent on the node starts cloning
+        MobileAgent agent = node.getMobileAgent();
+        if (agent != null) inDanger(agent);
+    }
+
+    /**
+     * A node in danger catches on fire
+     *
+     * @param node Node to burn
+     */
+    private void burn(GraphNode node) {
+        if (!node.setStatus(NodeStatus.RED)) return;
+
+        spread(node);
+
+        // Agent speaks one last time
+        MobileAgent agent = node.getMobileAgent();
+        if (agent != null) {
+            agent.updateDisplay();
+            send(node, agent.createReport());
+            agent.retire();
+        }
+    }
+
+    /**
+     * Puts the GREEN neighbors of a burning node in danger
+     *
+     * @param node Burning node
+     */
+    private void spread(GraphNode node) {
+        for (GraphNode n : node.getAdjacentNodes()) {
+            if (n.getStatus() == NodeStatus.GREEN) ignite(n);
+        }
+    }
+
+    /**
+     * An agent has arrived on its node, see MobileAgent.onBlueNode
+     *
+     * @param agent Agent that arrived
+     */
+    private void arrive(MobileAgent agent) {
+        GraphNode node = agent.getNode();
+        agent.updateDisplay();
+
+        if (node.getStatus() == NodeStatus.GREEN) {
+            send(node, agent.createReport());
+        } else if (node.getStatus() == NodeStatus.YELLOW) {
+            inDanger(agent);
+        }
+    }
+
+    /**
+     * The node of an agent is in danger, see MobileAgent.onYellowNode
+     *
+     * @param agent Agent on the node in danger
+     */
+    private void inDanger(MobileAgent agent) {
+        GraphNode node = agent.getNode();
+        agent.updateDisplay();
+
+        // Clone onto every neighbor that can still take an agent
+        for (GraphNode n : node.getAdjacentNodes()) {
+            schedule(0, () -> clone(n));
+        }
+
+        send(node, agent.createReport());
+    }
+
+    /**
+     * Clones an agent onto the node if it is not burning and free
+     *
+     * @param node Neighbor of an agent in danger
+     */
+    private void clone(GraphNode node) {
+        if (node.getStatus() != NodeStatus.RED && node.getMobileAgent() == null) {
+            MobileAgent agent = MobileAgent.spawn(node, false);
+            if (agent != null) arrive(agent);
+        }
+    }
+
+    /**
+     * Puts a packet into the mailbox of the node
+     *
+     * @param node Node receiving the packet
+     * @param p Packet
+     */
+    private void send(GraphNode node, Packet p) {
+        schedule(0, () -> hop(node, p));
+    }
+
+    /**
+     * A node processes a packet and passes it on to the next node
+     *
+     * @param node Node holding the packet
+     * @param p Packet
+     */
+    private void hop(GraphNode node, Packet p) {
+        // The packet reached the node, there is no mailbox to put it in
+        node.getContext().trace(TraceFile.PACKET, p.getID(), node.getId(), TraceFile.PACKET_ACCEPTED);
+        GraphNode next = node.route(p);
+        if (next == null) return;
+        node.getContext().getObserver().messageForwarded(p, node, next);
+        schedule(HOP_DELAY, () -> hop(next, p));
+    }
+
+    /**
+     * Timestamped action, ordered by time and then by the order they were
+     * scheduled in so that equal times stay first come first serve
+     */
+    private static class Event implements Comparable<Event> {
+
+        private final long time;
+        private final long sequence;
+        private final Runnable action;
+
+        Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event o) {
+            if (time != o.time) return Long.compare(time, o.time);
+            return Long.compare(sequence, o.sequence);
+        }
+    }
+}
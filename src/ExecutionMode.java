@@ -0,0 +1,67 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * How the GraphNodes of a threaded simulation are run, the MobileAgents
+ * share the agent executor of the SimulationContext
+ */
+public enum ExecutionMode {
+
+    // One operating system thread per node, the original setup
+    PLATFORM,
+
+    // One virtual thread per node, needs Java 21 or newer
+    VIRTUAL;
+
+
+    /**
+     * Creates the executor that starts the node tasks.
+     *
+     * Every task blocks until its node has burnt down, so the executor has
+     * to give each task its own thread.
+     *
+     * @return Executor of this mode
+     */
+    public Executor createExecutor() {
+        ThreadFactory factory;
+        if (this == VIRTUAL) factory = virtualThreadFactory();
+        else factory = Thread::new;
+
+        return task -> factory.newThread(task).start();
+    }
+
+    /**
+     * Checks if this mode can run on the running Java
+     *
+     * @return false for VIRTUAL before Java 21
+     */
+    public boolean isAvailable() {
+        if (this != VIRTUAL) return true;
+        try {
+            virtualThreadFactory();
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Looks up the virtual thread factory. Done with reflection since the
+     * build targets Java 11, so the rest of the program compiles and runs
+     * there without virtual threads.
+     *
+     * @return ThreadFactory creating virtual threads
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder")
+                                  .getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(
+                    "Virtual threads need Java 21 or newer", e);
+        }
+    }
+}
@@ -1,10 +1,9 @@
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Graph Data structure for Mobile Agents
@@ -12,167 +11,209 @@ import java.util.Map;
 public class Graph {
 
     // Private variables where the abstract data structures are held
-    private HashMap<Coordinate, GraphNode> nodes = new HashMap<>();
-    private LinkedList<Thread> nodeThreads = new LinkedList<>();
-    private LinkedList<GraphEdge> edges = new LinkedList<>();
+    private GraphNode[] nodesById;
+    private ArrayList<GraphEdge> edges = new ArrayList<>();
     private GraphNode baseStation;
+    private Topology topology;
+    private SimulationContext context = new SimulationContext();
 
 
     /**
-     * Graph constructor that creates a graph from the given text file
+     * Graph constructor that creates a graph from the given file, either the
+     * text format or a BinaryGraphFile
      * @param file File of the configured graph
+     * @throws IOException If the file can not be read or is malformed
      */
-    Graph(File file){
-        readIn(file);
+    Graph(File file) throws IOException {
+        this(load(file));
     }
 
     /**
-     * Read in the file name with the given .txt component
-     * @param file File to be read
+     * Graph constructor that creates the nodes of a loaded topology
+     * @param topology Compact layout of the graph
      */
-    private void readIn(File file){
-        BufferedReader in;
-        ArrayList<String> lines = new ArrayList<>();
-
-        int x, y;
-        try {
-
-            // Create buffered reader
-            in = new BufferedReader(new FileReader (file));
-
-
-            // Adds the users
-            String l;
-            while ((l = in.readLine()) != null) lines.add(l);
-
-            // Sorts the lines based on the first character
-            lines.sort((o1, o2) -> {
-                char c1 = o1.charAt(0);
-                char c2 = o2.charAt(0);
-
-                // Run various if statements to reorder the lines
-                if (c1 == 'n' || c2 == 'f' || c2 == 's') return -1;
-                else if (c2 == 'n' || c1 == 'f' || c1 == 's') return 1;
-                else return 0;
-            });
-
-            // Read in the graph nodes, edges, base station, fire
-            for (String line : lines) {
-
-                // Split based on the spaces
-                String[] strArray = line.split(" ");
-
-                switch (strArray[0]) {
-
-                    // Create a new Node
-                    case "node":
-
-                        x = Integer.parseInt(strArray[1]);
-                        y = Integer.parseInt(strArray[2]);
-
-                        Coordinate coord = new Coordinate(x,y);
-                        GraphNode node = new GraphNode(coord);
-
-                        // Create and save in the data structure
-                        nodes.put(coord, node);
-                        nodeThreads.add(new Thread(node));
-
-                        break;
-
-                    // New edge
-                    case "edge":
-
-                        //break input into coordinates
-                        x = Integer.parseInt(strArray[1]);
-                        y = Integer.parseInt(strArray[2]);
-                        Coordinate c1 = new Coordinate(x,y);
+    Graph(Topology topology){
+        this.topology = topology;
+        build();
+    }
 
-                        x = Integer.parseInt(strArray[3]);
-                        y = Integer.parseInt(strArray[4]);
-                        Coordinate c2 = new Coordinate(x,y);
+    /**
+     * Loads the topology of a file, binary graphs are mapped and text graphs
+     * are parsed in parallel
+     * @param file File of the configured graph
+     * @return Topology of the file
+     * @throws IOException If the file can not be read or is malformed
+     */
+    static Topology load(File file) throws IOException {
+        if (BinaryGraphFile.isBinary(file)) return BinaryGraphFile.open(file);
+        return ParallelGraphLoader.load(file);
+    }
 
-                        // If the node hasnt been read in for whatever reason
-                        if (!nodes.containsKey(c2)){
-                            node = new GraphNode(c2);
-                            nodes.put(c2, node);
-                        }
-                        if (!nodes.containsKey(c1)){
-                            node = new GraphNode(c1);
-                            nodes.put(c1, node);
-                        }
+    /**
+     * Creates the GraphNodes and GraphEdges of the topology and sets the
+     * starting statuses
+     */
+    private void build() {
+        int count = topology.getNodeCount();
+        nodesById = new GraphNode[count];
+
+        // One node per ID
+        for (int i = 0; i < count; i++) {
+            Coordinate coord = new Coordinate(topology.getX(i), topology.getY(i));
+            nodesById[i] = new GraphNode(coord, context, i);
+        }
 
-                        //if the nodes has been read in
-                        if (nodes.containsKey(c1) && nodes.containsKey(c2)){
-                            edges.add(new GraphEdge(nodes.get(c1),
-                                                    nodes.get(c2)));
-                        }
+        // Neighbors come straight out of the compressed rows
+        for (int i = 0; i < count; i++) {
+            GraphNode[] adjacent = new GraphNode[topology.getDegree(i)];
+            boolean loop = false;
+            for (int j = topology.getStart(i); j < topology.getEnd(i); j++) {
+                int target = topology.getTarget(j);
+                adjacent[j - topology.getStart(i)] = nodesById[target];
+
+                // Every edge is in both rows, only keep one GraphEdge. An
+                // edge to itself is in the same row twice.
+                if (i == target) loop = !loop;
+                if (i < target || (i == target && loop)) {
+                    edges.add(new GraphEdge(nodesById[i], nodesById[target]));
+                }
+            }
+            nodesById[i].setAdjacentNodes(adjacent);
+        }
 
+        // Set the base station!
+        if (topology.getStation() >= 0) {
+            baseStation = nodesById[topology.getStation()];
+            baseStation.setBase();
+        }
 
-                        if (nodes.get(c1) != null && nodes.get(c2) != null) {
-                            nodes.get(c1).addEdge(nodes.get(c2));
-                        }
+        // Immediately set fire nodes to red
+        for (int fire : topology.getFires()) {
+            nodesById[fire].setStatus(NodeStatus.RED);
+        }
 
-                        break;
-                    // Set the station
-                    case "station":
+        // Set the fire node's neighbors to be yellow
+        for (int fire : topology.getFires()) {
+            for (GraphNode yellowNodes : nodesById[fire].getAdjacentNodes()) {
+                yellowNodes.setStatus(NodeStatus.YELLOW);
+            }
+        }
+    }
 
-                        // Set the base station!
-                        x = Integer.parseInt(strArray[1]);
-                        y = Integer.parseInt(strArray[2]);
-                        Coordinate b = new Coordinate(x,y);
+    /**
+     * Start a thread for every node. Threads are only created here so the
+     * event simulation can run large graphs without any of them.
+     *
+     * The kind of thread depends on the execution mode of the context.
+     */
+    public void startThreads(){
+        for (GraphNode node : nodesById) context.execute(node);
+    }
 
-                        baseStation = nodes.get(b);
-                        nodes.get(b).setBase();
+    /**
+     * Attach the observer that is told about every state change
+     *
+     * @param observer Observer such as the GUI or headless statistics
+     */
+    public void setObserver(SimulationObserver observer) {
+        context.setObserver(observer);
+    }
 
-                        break;
-                    // Set the node that was on fire
-                    case "fire":
+    /**
+     * Choose how packets find the base station. The table is built from
+     * the current statuses, so set this before the simulation starts.
+     *
+     * @param mode Search with receipts or shortest path routing table
+     */
+    public void setRoutingMode(RoutingMode mode) {
+        if (mode == RoutingMode.TABLE) {
+            context.setRoutingTable(new RoutingTable(this));
+        } else {
+            context.setRoutingTable(null);
+        }
+    }
 
-                        Coordinate c = new Coordinate(strArray[1] + " " +
-                                                      strArray[2]);
+    /**
+     * Bounds the mailbox of every node
+     *
+     * @param capacity Most packets waiting at a node at once
+     * @param policy What a full mailbox does with new packets
+     */
+    public void setMailboxLimit(int capacity, OverflowPolicy policy) {
+        for (GraphNode node : nodesById) node.getMailbox().setLimit(capacity, policy);
+    }
 
-                        // Immediately set node to red
-                        if (nodes != null && nodes.get(c) != null) {
-                            nodes.get(c).setStatus(NodeStatus.RED);
-                        }
+    /**
+     * Get the context shared by all nodes of this graph
+     *
+     * @return SimulationContext of the graph
+     */
+    public SimulationContext getContext() {
+        return context;
+    }
 
-                        break;
-                }
+    /**
+     * Checks if the fire is still spreading, that is if any node is
+     * still in danger
+     *
+     * @return true if the simulation is still active
+     */
+    public boolean isActive() {
+        for (GraphNode node : nodesById) {
+            if (node.getStatus() == NodeStatus.YELLOW) {
+                return true;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
+        return false;
+    }
 
-        // Initializes status for the corresponding nodes
-
-        for (GraphNode node : nodes.values()) {
-
-            // Set the fire node's neighbors to be yellow
-            if (node.getStatus() == NodeStatus.RED) {
+    /**
+     * Get the nodes, in order of their ID
+     *
+     * @return Unmodifiable list of the nodes
+     */
+    public List<GraphNode> getNodes() {
+        return Collections.unmodifiableList(Arrays.asList(nodesById));
+    }
 
-                // Set the adjacent node's statuses
-                for (GraphNode yellowNodes : node.getAdjacentNodes()) {
-                    yellowNodes.setStatus(NodeStatus.YELLOW);
-                }
-            }
-        }
+    /**
+     * Get the node at a location, without allocating a Coordinate key
+     *
+     * @param x x-Coordinate
+     * @param y y-Coordinate
+     * @return GraphNode there, null if there is none
+     */
+    public GraphNode getNode(int x, int y) {
+        int id = topology.find(x, y);
+        return id < 0 ? null : nodesById[id];
+    }
 
+    /**
+     * Get a node by its ID
+     *
+     * @param id ID of the node, 0 to getNodeCount() - 1
+     * @return GraphNode with that ID
+     */
+    public GraphNode getNode(int id) {
+        return nodesById[id];
     }
 
     /**
-     * Start the threads
+     * Get the amount of nodes
+     *
+     * @return Count of nodes
      */
-    public void startThreads(){
-        for (Thread thr : nodeThreads) thr.start();
+    public int getNodeCount() {
+        return nodesById.length;
     }
 
     /**
-     * Get the mapped nodes
+     * Get the compact layout the graph was built from
      *
-     * @return Map of Coordinates to the Nodes
+     * @return Topology of the graph
      */
-    public Map<Coordinate, GraphNode> getNodes() {
-        return nodes;
+    public Topology getTopology() {
+        return topology;
     }
 
     /**
@@ -180,7 +221,7 @@ public class Graph {
      *
      * @return List of Edges
      */
-    public LinkedList<GraphEdge> getEdges() {
+    public List<GraphEdge> getEdges() {
         return edges;
     }
 
@@ -0,0 +1,536 @@
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * Draws a whole graph on a single Canvas, for graphs too large to have a
+ * Circle and a Line per node and edge.
+ *
+ * Drag to pan, scroll to zoom and double click to fit the graph again. The
+ * nodes are kept in a grid by location and the edges by the cells their
+ * line crosses, so only the cells on screen are drawn. Zoomed far out the nodes become dots and the edges are left out.
+ * A changed node only redraws the small area around it, everything is only
+ * drawn again after a pan, zoom or resize.
+ *
+ * Only touched on the JavaFX thread.
+ */
+public class GraphCanvas extends Pane {
+
+    // Sizes in graph units, the same as the shapes of GraphDisplay
+    private static final double NODE_RADIUS = 0.2;
+    private static final double AGENT_RADIUS = 0.4;
+    private static final double EDGE_WIDTH = 0.08;
+
+    // Nodes smaller than this many pixels are drawn as dots without edges
+    private static final double DOT_SIZE = 2;
+    private static final double EDGE_SIZE = 0.5;
+
+    // More changed nodes than this in a frame draw everything again
+    private static final int DIRTY_LIMIT = 512;
+
+    // Cells an edge is kept in on average, long edges make the cells larger
+    private static final int EDGE_CELLS = 4;
+
+    // Private variables
+    private final Canvas canvas = new Canvas();
+    private final GraphicsContext gc = canvas.getGraphicsContext2D();
+    private final Graph graph;
+    private final Topology topology;
+
+    // Bounds of the graph, in graph units
+    private int minX = Integer.MAX_VALUE;
+    private int minY = Integer.MAX_VALUE;
+    private int maxX = Integer.MIN_VALUE;
+    private int maxY = Integer.MIN_VALUE;
+
+    // Grid of the node IDs by location, in compressed rows per cell
+    private double cellSize;
+    private int columns;
+    private int rows;
+    private int[] cellStart;
+    private int[] cellNodes;
+
+    // Grid of the edges by the cells their line crosses, and the last
+    // search that found each edge so it is drawn once
+    private double edgeCellSize;
+    private int edgeColumns;
+    private int edgeRows;
+    private int[] edgeFrom;
+    private int[] edgeTo;
+    private int[] edgeCellStart;
+    private int[] edgeCellEdges;
+    private int[] edgeSearch;
+    private int search = 0;
+
+    // View, a point is drawn at point * zoom + offset
+    private double zoom = GraphDisplay.scale;
+    private double offsetX = 0;
+    private double offsetY = 0;
+    private boolean fitted = false;
+    private double dragX;
+    private double dragY;
+
+    // Agents by node, to draw them without asking the simulation
+    private final int[] agentsAt;
+    private final Map<MobileAgent, Integer> agentNodes = new HashMap<>();
+
+    // Nodes to redraw around in the next frame
+    private boolean redrawAll = true;
+    private int[] dirty = new int[64];
+    private int dirtyCount = 0;
+    private final boolean[] isDirty;
+
+
+    /**
+     * Creates the canvas of a graph
+     *
+     * @param graph Graph to draw
+     */
+    GraphCanvas(Graph graph) {
+        this.graph = graph;
+        this.topology = graph.getTopology();
+        this.agentsAt = new int[topology.getNodeCount()];
+        this.isDirty = new boolean[topology.getNodeCount()];
+
+        buildGrid();
+
+        // The canvas follows the size of the pane
+        getChildren().add(canvas);
+        canvas.widthProperty().bind(widthProperty());
+        canvas.heightProperty().bind(heightProperty());
+        canvas.widthProperty().addListener(o -> redrawAll = true);
+        canvas.heightProperty().addListener(o -> redrawAll = true);
+        setMinSize(0, 0);
+
+        // Pan, zoom and fit
+        setOnMousePressed(e -> {
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        setOnMouseDragged(e -> {
+            offsetX += e.getX() - dragX;
+            offsetY += e.getY() - dragY;
+            dragX = e.getX();
+            dragY = e.getY();
+            redrawAll = true;
+        });
+        setOnScroll(e -> {
+            double factor = Math.pow(1.0015, e.getDeltaY());
+            offsetX = e.getX() - (e.getX() - offsetX) * factor;
+            offsetY = e.getY() - (e.getY() - offsetY) * factor;
+            zoom *= factor;
+            redrawAll = true;
+        });
+        setOnMouseClicked(e -> {
+            if (e.getButton() == MouseButton.PRIMARY && e.getClickCount() == 2) fit();
+        });
+    }
+
+    /**
+     * Puts every node in the grid cell of its location, then every edge in
+     * the cells of the edge grid its line crosses
+     */
+    private void buildGrid() {
+        int count = topology.getNodeCount();
+        int edges = 0;
+        double length = 0;
+        for (int i = 0; i < count; i++) {
+            minX = Math.min(minX, topology.getX(i));
+            minY = Math.min(minY, topology.getY(i));
+            maxX = Math.max(maxX, topology.getX(i));
+            maxY = Math.max(maxY, topology.getY(i));
+            for (int j = topology.getStart(i); j < topology.getEnd(i); j++) {
+                int other = topology.getTarget(j);
+                if (other < i) continue;
+                edges++;
+                length += Math.abs(topology.getX(other) - topology.getX(i))
+                        + Math.abs(topology.getY(other) - topology.getY(i));
+            }
+        }
+        if (count == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+
+        // About four nodes per cell for an even spread
+        double width = maxX - minX + 1.0;
+        double height = maxY - minY + 1.0;
+        cellSize = Math.max(1, Math.sqrt(width * height * 4 / Math.max(count, 1)));
+        columns = (int) Math.ceil(width / cellSize);
+        rows = (int) Math.ceil(height / cellSize);
+
+        // Count then fill, like the rows of the topology
+        cellStart = new int[columns * rows + 1];
+        cellNodes = new int[count];
+        for (int i = 0; i < count; i++) cellStart[cellOf(i) + 1]++;
+        for (int c = 0; c < columns * rows; c++) cellStart[c + 1] += cellStart[c];
+        int[] fill = Arrays.copyOf(cellStart, columns * rows);
+        for (int i = 0; i < count; i++) cellNodes[fill[cellOf(i)]++] = i;
+
+        // A line crosses about its length across and down over the cell size
+        // cells. Cells as small as the node cells unless the long edges of
+        // a small world or scale free graph would fill too many of them.
+        edgeCellSize = Math.max(cellSize, length / (EDGE_CELLS * Math.max(edges, 1)));
+        edgeColumns = (int) Math.ceil(width / edgeCellSize);
+        edgeRows = (int) Math.ceil(height / edgeCellSize);
+        int edgeCells = edgeColumns * edgeRows;
+        edgeFrom = new int[edges];
+        edgeTo = new int[edges];
+        edgeSearch = new int[edges];
+        int e = 0;
+        for (int i = 0; i < count; i++) {
+            for (int j = topology.getStart(i); j < topology.getEnd(i); j++) {
+                if (topology.getTarget(j) < i) continue;
+                edgeFrom[e] = i;
+                edgeTo[e++] = topology.getTarget(j);
+            }
+        }
+
+        edgeCellStart = new int[edgeCells + 1];
+        for (e = 0; e < edges; e++) {
+            forEachEdgeCell(e, cell -> edgeCellStart[cell + 1]++);
+        }
+        for (int c = 0; c < edgeCells; c++) edgeCellStart[c + 1] += edgeCellStart[c];
+        edgeCellEdges = new int[edgeCellStart[edgeCells]];
+        int[] edgeFill = Arrays.copyOf(edgeCellStart, edgeCells);
+        for (e = 0; e < edges; e++) {
+            int edge = e;
+            forEachEdgeCell(e, cell -> edgeCellEdges[edgeFill[cell]++] = edge);
+        }
+    }
+
+    /**
+     * Walks the cells of the edge grid that the line of an edge crosses,
+     * stepping to the next column or row by whichever border comes first
+     *
+     * @param edge Index of the edge
+     * @param action Action for the index of the cell
+     */
+    private void forEachEdgeCell(int edge, IntConsumer action) {
+        double fromX = (topology.getX(edgeFrom[edge]) - minX) / edgeCellSize;
+        double fromY = (topology.getY(edgeFrom[edge]) - minY) / edgeCellSize;
+        double toX = (topology.getX(edgeTo[edge]) - minX) / edgeCellSize;
+        double toY = (topology.getY(edgeTo[edge]) - minY) / edgeCellSize;
+        int column = (int) fromX;
+        int row = (int) fromY;
+        int endColumn = (int) toX;
+        int endRow = (int) toY;
+        int stepX = Integer.signum(endColumn - column);
+        int stepY = Integer.signum(endRow - row);
+
+        // Part of the line to the next border and between two borders
+        double deltaX = stepX == 0 ? Double.POSITIVE_INFINITY : 1 / Math.abs(toX - fromX);
+        double deltaY = stepY == 0 ? Double.POSITIVE_INFINITY : 1 / Math.abs(toY - fromY);
+        double nextX = stepX > 0 ? (column + 1 - fromX) * deltaX : (fromX - column) * deltaX;
+        double nextY = stepY > 0 ? (row + 1 - fromY) * deltaY : (fromY - row) * deltaY;
+
+        action.accept(row * edgeColumns + column);
+        while (column != endColumn || row != endRow) {
+            if (column != endColumn && (row == endRow || nextX < nextY)) {
+                column += stepX;
+                nextX += deltaX;
+            } else {
+                row += stepY;
+                nextY += deltaY;
+            }
+            action.accept(row * edgeColumns + column);
+        }
+    }
+
+    /**
+     * Gets the grid cell of a node
+     *
+     * @param node Node ID
+     * @return Index of the cell
+     */
+    private int cellOf(int node) {
+        int column = (int) ((topology.getX(node) - minX) / cellSize);
+        int row = (int) ((topology.getY(node) - minY) / cellSize);
+        return row * columns + column;
+    }
+
+    /**
+     * Zooms and pans so the whole graph fits the canvas
+     */
+    public void fit() {
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        if (width <= 0 || height <= 0) return;
+
+        double margin = AGENT_RADIUS * 2;
+        zoom = Math.min(width / (maxX - minX + margin * 2),
+                        height / (maxY - minY + margin * 2));
+        offsetX = (width - (maxX + minX) * zoom) / 2;
+        offsetY = (height - (maxY + minY) * zoom) / 2;
+        fitted = true;
+        redrawAll = true;
+    }
+
+    /**
+     * Marks a node to be redrawn in the next frame
+     *
+     * @param node Node ID
+     */
+    public void nodeChanged(int node) {
+        if (isDirty[node]) return;
+        isDirty[node] = true;
+        if (dirtyCount == dirty.length) dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+        dirty[dirtyCount++] = node;
+    }
+
+    /**
+     * Moves an agent to a node, redrawing where it was and where it is
+     *
+     * @param agent Agent that changed
+     */
+    public void agentChanged(MobileAgent agent) {
+        int node = agent.getNode().getId();
+        Integer old = agentNodes.put(agent, node);
+        if (old != null) {
+            agentsAt[old]--;
+            nodeChanged(old);
+        }
+        agentsAt[node]++;
+        nodeChanged(node);
+    }
+
+    /**
+     * Shows or hides the agent ring of a node, for a replay that has no
+     * MobileAgents
+     *
+     * @param node Node ID
+     * @param shown If the node has an agent
+     */
+    public void setAgent(int node, boolean shown) {
+        int count = shown ? 1 : 0;
+        if (agentsAt[node] == count) return;
+        agentsAt[node] = count;
+        nodeChanged(node);
+    }
+
+    /**
+     * Draws what changed since the last frame
+     */
+    public void paint() {
+        if (!fitted) fit();
+
+        if (redrawAll || dirtyCount > DIRTY_LIMIT) {
+            draw(-offsetX / zoom, -offsetY / zoom,
+                 (canvas.getWidth() - offsetX) / zoom,
+                 (canvas.getHeight() - offsetY) / zoom);
+        } else {
+            for (int i = 0; i < dirtyCount; i++) {
+                int node = dirty[i];
+                double x = topology.getX(node);
+                double y = topology.getY(node);
+                double r = AGENT_RADIUS + 4 / zoom;
+
+                gc.save();
+                gc.beginPath();
+                gc.rect(x * zoom + offsetX - r * zoom, y * zoom + offsetY - r * zoom,
+                        r * zoom * 2, r * zoom * 2);
+                gc.clip();
+                draw(x - r, y - r, x + r, y + r);
+                gc.restore();
+            }
+        }
+
+        for (int i = 0; i < dirtyCount; i++) isDirty[dirty[i]] = false;
+        dirtyCount = 0;
+        redrawAll = false;
+    }
+
+    /**
+     * Clears an area and draws the edges, nodes and agents in it
+     *
+     * @param left Left side of the area, in graph units
+     * @param top Top side of the area
+     * @param right Right side of the area
+     * @param bottom Bottom side of the area
+     */
+    private void draw(double left, double top, double right, double bottom) {
+        gc.setFill(Color.WHITE);
+        gc.fillRect(left * zoom + offsetX, top * zoom + offsetY,
+                    (right - left) * zoom, (bottom - top) * zoom);
+
+        double nodeSize = NODE_RADIUS * zoom;
+        boolean dots = nodeSize < DOT_SIZE;
+
+        // Edges whose line crosses a cell of the area
+        if (nodeSize >= EDGE_SIZE) {
+            gc.setStroke(Color.BLACK);
+            gc.setLineWidth(Math.max(1, EDGE_WIDTH * zoom));
+            gc.beginPath();
+            double margin = EDGE_WIDTH;
+            forEachEdge(left - margin, top - margin, right + margin, bottom + margin, edge -> {
+                gc.moveTo(screenX(edgeFrom[edge]), screenY(edgeFrom[edge]));
+                gc.lineTo(screenX(edgeTo[edge]), screenY(edgeTo[edge]));
+            });
+            gc.stroke();
+        }
+
+        // Nodes, then the agents on top
+        double margin = AGENT_RADIUS;
+        forEachNode(left - margin, top - margin, right + margin, bottom + margin,
+                    node -> drawNode(node, dots));
+        forEachNode(left - margin, top - margin, right + margin, bottom + margin, node -> {
+            if (agentsAt[node] > 0) drawAgent(node, dots);
+        });
+    }
+
+    /**
+     * Draws a node in the colors of its status
+     *
+     * @param node Node ID
+     * @param dots If the node is too small for a circle
+     */
+    private void drawNode(int node, boolean dots) {
+        GraphNode graphNode = graph.getNode(node);
+        double x = screenX(node);
+        double y = screenY(node);
+
+        Color fill;
+        Color stroke;
+        switch (graphNode.getStatus()) {
+            case YELLOW:
+                fill = Color.YELLOW;
+                stroke = Color.ORANGE;
+                break;
+            case RED:
+                fill = Color.RED;
+                stroke = Color.DARKRED;
+                break;
+            default:
+                fill = Color.BLUE;
+                stroke = Color.DARKBLUE;
+                break;
+        }
+        if (graphNode.isBase()) stroke = Color.GRAY;
+
+        gc.setFill(graphNode.isBase() && dots ? Color.GRAY : fill);
+        if (dots) {
+            double size = Math.max(1, NODE_RADIUS * zoom * 2);
+            gc.fillRect(x - size / 2, y - size / 2, size, size);
+            return;
+        }
+
+        double r = NODE_RADIUS * zoom;
+        gc.fillOval(x - r, y - r, r * 2, r * 2);
+        gc.setStroke(stroke);
+        gc.setLineWidth((graphNode.isBase() ? 5 : 3) * zoom / GraphDisplay.scale);
+        gc.strokeOval(x - r, y - r, r * 2, r * 2);
+    }
+
+    /**
+     * Draws the ring of the agents on a node
+     *
+     * @param node Node ID
+     * @param dots If the node is too small for a circle
+     */
+    private void drawAgent(int node, boolean dots) {
+        switch (graph.getNode(node).getStatus()) {
+            case YELLOW:
+                gc.setStroke(Color.DARKORANGE);
+                break;
+            case RED:
+                gc.setStroke(Color.CRIMSON);
+                break;
+            default:
+                gc.setStroke(Color.DARKBLUE);
+                break;
+        }
+
+        double x = screenX(node);
+        double y = screenY(node);
+        double r = dots ? 2 : AGENT_RADIUS * zoom;
+        gc.setLineWidth(dots ? 1 : 3 * zoom / GraphDisplay.scale);
+        gc.strokeOval(x - r, y - r, r * 2, r * 2);
+    }
+
+    /**
+     * Runs an action for every node in the grid cells that overlap an area
+     *
+     * @param left Left side of the area, in graph units
+     * @param top Top side of the area
+     * @param right Right side of the area
+     * @param bottom Bottom side of the area
+     * @param action Action for the node ID
+     */
+    private void forEachNode(double left, double top, double right, double bottom,
+                             IntConsumer action) {
+        int fromColumn = Math.max(0, (int) Math.floor((left - minX) / cellSize));
+        int toColumn = Math.min(columns - 1, (int) Math.floor((right - minX) / cellSize));
+        int fromRow = Math.max(0, (int) Math.floor((top - minY) / cellSize));
+        int toRow = Math.min(rows - 1, (int) Math.floor((bottom - minY) / cellSize));
+
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                int cell = row * columns + column;
+                for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+                    action.accept(cellNodes[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs an action once for every edge in the edge grid cells that overlap
+     * an area
+     *
+     * @param left Left side of the area, in graph units
+     * @param top Top side of the area
+     * @param right Right side of the area
+     * @param bottom Bottom side of the area
+     * @param action Action for the index of the edge
+     */
+    private void forEachEdge(double left, double top, double right, double bottom,
+                             IntConsumer action) {
+        int fromColumn = Math.max(0, (int) Math.floor((left - minX) / edgeCellSize));
+        int toColumn = Math.min(edgeColumns - 1, (int) Math.floor((right - minX) / edgeCellSize));
+        int fromRow = Math.max(0, (int) Math.floor((top - minY) / edgeCellSize));
+        int toRow = Math.min(edgeRows - 1, (int) Math.floor((bottom - minY) / edgeCellSize));
+
+        // A new search number, starting over once it wraps around
+        if (++search == 0) {
+            Arrays.fill(edgeSearch, 0);
+            search = 1;
+        }
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                int cell = row * edgeColumns + column;
+                for (int i = edgeCellStart[cell]; i < edgeCellStart[cell + 1]; i++) {
+                    int edge = edgeCellEdges[i];
+                    if (edgeSearch[edge] == search) continue;
+                    edgeSearch[edge] = search;
+                    action.accept(edge);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the screen X of a node
+     *
+     * @param node Node ID
+     * @return Pixel column on the canvas
+     */
+    private double screenX(int node) {
+        return topology.getX(node) * zoom + offsetX;
+    }
+
+    /**
+     * Gets the screen Y of a node
+     *
+     * @param node Node ID
+     * @return Pixel row on the canvas
+     */
+    private double screenY(int node) {
+        return topology.getY(node) * zoom + offsetY;
+    }
+}
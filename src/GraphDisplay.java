@@ -1,45 +1,111 @@
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 import javafx.scene.Group;
 import javafx.scene.Node;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Slider;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Circle;
+import javafx.scene.shape.Line;
 import javafx.scene.text.Text;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Displays Graph data structure and it components
+ *
+ * The display observes the simulation. The simulation threads only mark
+ * nodes and agents as dirty, and once per frame an AnimationTimer paints the
+ * latest state of everything marked, so the work per frame depends on how
+ * much changed and not on how fast the simulation runs.
+ *
+ * Graphs with more than SHAPE_LIMIT nodes are drawn on a GraphCanvas instead
+ * of with a shape per node and edge.
+ *
+ * A display can also play back a recorded run, see replay. It then sets the
+ * statuses of its own graph, which never runs, and draws the agent ring of a
+ * node instead of one per MobileAgent.
  */
-public class GraphDisplay {
+public class GraphDisplay implements SimulationObserver, TraceReplay.Listener {
 
     public static int scale = 50;
+
+    // Larger graphs are drawn on a canvas
+    public static final int SHAPE_LIMIT = 2000;
+
+    // Simulation milliseconds per real millisecond a replay can play at
+    private static final double[] SPEEDS = {0.1, 1, 10, 100, 1000, 10000};
+
     private BorderPane root = new BorderPane();
     private Group centerGroup = new Group();
     private static BaseStationLog baseLog = new BaseStationLog();
 
+    // Shapes of the nodes and agents, only touched on the JavaFX thread
+    private Circle[] nodeDisplays;
+    private Map<MobileAgent, Circle> agentDisplays = new ConcurrentHashMap<>();
+    private GraphCanvas canvas;
+
+    // Nodes and agents changed since the last frame
+    private Set<GraphNode> dirtyNodes = ConcurrentHashMap.newKeySet();
+    private Set<MobileAgent> dirtyAgents = ConcurrentHashMap.newKeySet();
+
+    // Replay of a recorded run, null while showing a running simulation
+    private Graph graph;
+    private TraceReplay replay;
+    private Circle[] replayAgents;
+    private Button playButton;
+    private Slider timeSlider;
+    private Text timeText;
+    private boolean playing = false;
+    private boolean movingSlider = false;
+    private double speed = 1;
+    private double replayTime = 0;
+    private long lastFrame = 0;
+
 
     /**
      * Initializes javafx shapes etc GUI components
      */
     GraphDisplay(Graph g){
+        graph = g;
 
+        baseLog.setMaxHeight(300);
+        baseLog.setMinHeight(300);
+        BorderPane.setMargin(baseLog, new Insets(5,0,5,50));
 
-        ScrollPane sp = new ScrollPane();
-        sp.setContent(baseLog);
-        sp.setMaxHeight(300);
-        sp.setMinHeight(300);
-        sp.setPadding(new Insets(5,0,5,50));
-
-        root.setCenter(centerGroup);
         root.setRight(getLegend());
-        root.setBottom(sp);
+        root.setBottom(baseLog);
 
-        initGraphics(g);
+        if (g.getNodeCount() > SHAPE_LIMIT) {
+            canvas = new GraphCanvas(g);
+            root.setCenter(canvas);
+        } else {
+            root.setCenter(centerGroup);
+            initGraphics(g);
+        }
+
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (replay != null) advanceReplay(now);
+                paintDirty();
+            }
+        }.start();
     }
 
     /**
-     * Add to the log with the specified message
+     * Add to the log with the specified message, from any thread
      *
      * @param message Message of the string
      */
@@ -73,14 +139,351 @@ public class GraphDisplay {
 
         // Display each edge
         for (GraphEdge e : graph.getEdges()){
-            centerGroup.getChildren().add(e.getLine());
+            centerGroup.getChildren().add(createLine(e));
+        }
+
+        // Display each node, the circles are kept by node ID
+        nodeDisplays = new Circle[graph.getNodeCount()];
+        for (GraphNode n : graph.getNodes()){
+            Circle c = createNodeDisplay(n);
+            nodeDisplays[n.getId()] = c;
+            centerGroup.getChildren().add(c);
+        }
+
+    }
+
+    /**
+     * Gets the Line that is drawn between the two GraphNodes of an edge
+     *
+     * @param edge Edge to be drawn
+     * @return GUI Line component
+     */
+    private Line createLine(GraphEdge edge) {
+        Line l = new Line();
+
+        // Set the GUI component
+        l.setStartX(edge.getNode1().getCoordinate().getX() * scale);
+        l.setStartY(edge.getNode1().getCoordinate().getY() * scale);
+        l.setEndX(edge.getNode2().getCoordinate().getX() * scale);
+        l.setEndY(edge.getNode2().getCoordinate().getY() * scale);
+        l.setFill(Color.BLACK);
+        l.setStroke(Color.BLACK);
+        l.setStrokeWidth(4);
+        return l;
+    }
+
+    /**
+     * Creates the Circle representation of a GraphNode
+     *
+     * @param node GraphNode to be drawn
+     * @return Circle representing the node
+     */
+    private Circle createNodeDisplay(GraphNode node) {
+        Circle display = new Circle(10);
+        display.setStrokeWidth(3);
+
+        // The base station is outlined
+        if (node.isBase()) {
+            display.setStrokeWidth(5);
+            display.setStroke(Color.GRAY);
+        }
+
+        // Set the center and the colors of the current status
+        display.setCenterX(node.getCoordinate().getX() * scale);
+        display.setCenterY(node.getCoordinate().getY() * scale);
+        paintNode(node, display, node.getStatus());
+        return display;
+    }
+
+    /**
+     * Change the color of a node display based on the status
+     *
+     * @param node GraphNode displayed
+     * @param display Circle of the node
+     * @param status Status to be shown
+     */
+    private void paintNode(GraphNode node, Circle display, NodeStatus status) {
+        switch (status) {
+            case GREEN:
+                display.setFill(Color.BLUE);
+                if (!node.isBase()) display.setStroke(Color.DARKBLUE);
+                break;
+            case YELLOW:
+                display.setFill(Color.YELLOW);
+                if (!node.isBase()) display.setStroke(Color.ORANGE);
+                break;
+            case RED:
+                display.setFill(Color.RED);
+                if (!node.isBase()) display.setStroke(Color.DARKRED);
+                break;
+        }
+    }
+
+    /**
+     * Creates the ring shown around the node of an agent
+     *
+     * @return Circle of an agent
+     */
+    private Circle createAgentDisplay() {
+        Circle c = new Circle(20);
+        c.setStroke(Color.AZURE);
+        c.setFill(Color.TRANSPARENT);
+        c.setStrokeWidth(3);
+        return c;
+    }
+
+    /**
+     * Change the color and location of an agent display
+     *
+     * @param node GraphNode the agent is on
+     * @param display Circle of the agent
+     */
+    private void paintAgent(GraphNode node, Circle display) {
+        display.setCenterX(node.getCoordinate().getX() * scale);
+        display.setCenterY(node.getCoordinate().getY() * scale);
+
+        switch (node.getStatus()) {
+            case GREEN:
+                display.setStroke(Color.DARKBLUE);
+                break;
+            case YELLOW:
+                display.setStroke(Color.DARKORANGE);
+                break;
+            case RED:
+                display.setStroke(Color.CRIMSON);
+                break;
+        }
+    }
+
+    /**
+     * Paints everything marked since the last frame, on the JavaFX thread.
+     * A mark is taken out before the state is read, so a change that comes
+     * in meanwhile is painted in the next frame.
+     */
+    private void paintDirty() {
+        if (canvas != null) {
+            paintCanvas();
+            return;
+        }
+
+        for (Iterator<GraphNode> it = dirtyNodes.iterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            it.remove();
+            paintNode(node, nodeDisplays[node.getId()], node.getStatus());
+        }
+
+        for (Iterator<MobileAgent> it = dirtyAgents.iterator(); it.hasNext(); ) {
+            MobileAgent agent = it.next();
+            it.remove();
+            Circle c = agentDisplays.get(agent);
+            if (c == null) continue;
+
+            // New agents are added to the center on their first frame
+            if (c.getParent() == null) centerGroup.getChildren().add(c);
+            paintAgent(agent.getNode(), c);
+        }
+    }
+
+    /**
+     * Hands everything marked since the last frame to the canvas and lets it
+     * draw the areas that changed
+     */
+    private void paintCanvas() {
+        for (Iterator<GraphNode> it = dirtyNodes.iterator(); it.hasNext(); ) {
+            GraphNode node = it.next();
+            it.remove();
+            canvas.nodeChanged(node.getId());
+        }
+
+        for (Iterator<MobileAgent> it = dirtyAgents.iterator(); it.hasNext(); ) {
+            MobileAgent agent = it.next();
+            it.remove();
+            canvas.agentChanged(agent);
+        }
+
+        canvas.paint();
+    }
+
+    /**
+     * Marks the node to be recolored in the next frame
+     *
+     * @param node GraphNode that changed
+     * @param status New status of the node
+     */
+    @Override
+    public void statusChanged(GraphNode node, NodeStatus status) {
+        dirtyNodes.add(node);
+    }
+
+    /**
+     * Creates the circle of a new agent, it is added to the center in the
+     * next frame
+     *
+     * @param agent Newly created agent
+     */
+    @Override
+    public void agentCreated(MobileAgent agent) {
+        if (canvas != null) {
+            dirtyAgents.add(agent);
+            return;
+        }
+
+        agentDisplays.put(agent, createAgentDisplay());
+        dirtyAgents.add(agent);
+    }
+
+    /**
+     * Marks the circle of an agent to be moved/recolored in the next frame
+     *
+     * @param agent Agent to be redrawn
+     */
+    @Override
+    public void agentUpdated(MobileAgent agent) {
+        dirtyAgents.add(agent);
+    }
+
+    /**
+     * Shows the message of a delivered packet in the base station log, the
+     * log batches the messages onto the JavaFX thread itself
+     *
+     * @param packet Delivered packet
+     */
+    @Override
+    public void messageDelivered(Packet packet) {
+        addToLog(packet.getMessage());
+    }
+
+    /**
+     * Turns the display into a player of a recorded run. The graph of the
+     * display has to be the freshly loaded graph of the trace and is never
+     * run.
+     *
+     * @param replay Replay of the trace
+     */
+    public void replay(TraceReplay replay) {
+        this.replay = replay;
+        if (canvas == null) replayAgents = new Circle[graph.getNodeCount()];
+        root.setTop(getReplayControls());
+        seekReplay();
+    }
+
+    /**
+     * Get the controls of a replay: play and pause, the speed, and a slider
+     * to scrub through the run either way
+     *
+     * @return HBox of the controls
+     */
+    private HBox getReplayControls() {
+        playButton = new Button("Play");
+        playButton.setOnAction(event -> {
+            // Playing at the end starts over
+            if (!playing && replayTime >= replay.getEndTime()) replayTime = 0;
+            setPlaying(!playing);
+        });
+
+        ChoiceBox<String> speedBox = new ChoiceBox<>();
+        for (double s : SPEEDS) {
+            speedBox.getItems().add((s < 1 ? String.valueOf(s) : String.valueOf((long) s)) + "x");
         }
+        speedBox.getSelectionModel().select(1);
+        speedBox.getSelectionModel().selectedIndexProperty().addListener(
+                (o, old, index) -> speed = SPEEDS[index.intValue()]);
 
-        // Display each node
-        for (GraphNode n : graph.getNodes().values()){
-            centerGroup.getChildren().add(n.getDisplay());
+        timeSlider = new Slider(0, Math.max(1, replay.getEndTime()), 0);
+        HBox.setHgrow(timeSlider, Priority.ALWAYS);
+        timeSlider.valueProperty().addListener((o, old, value) -> {
+            if (movingSlider) return;
+            replayTime = value.doubleValue();
+            seekReplay();
+        });
+
+        timeText = new Text();
+
+        HBox controls = new HBox(10, playButton, speedBox, timeSlider, timeText);
+        controls.setAlignment(Pos.CENTER_LEFT);
+        controls.setPadding(new Insets(5));
+        return controls;
+    }
+
+    /**
+     * Plays or pauses the replay
+     *
+     * @param playing If the replay should play
+     */
+    private void setPlaying(boolean playing) {
+        this.playing = playing;
+        playButton.setText(playing ? "Pause" : "Play");
+    }
+
+    /**
+     * Moves a playing replay forward by the time since the last frame
+     *
+     * @param now Time of the frame in nanoseconds
+     */
+    private void advanceReplay(long now) {
+        long elapsed = lastFrame == 0 ? 0 : now - lastFrame;
+        lastFrame = now;
+        if (!playing) return;
+
+        replayTime = Math.min(replayTime + elapsed / 1_000_000.0 * speed, replay.getEndTime());
+        if (replayTime >= replay.getEndTime()) setPlaying(false);
+        seekReplay();
+    }
+
+    /**
+     * Shows the replay at replayTime and moves the slider along
+     */
+    private void seekReplay() {
+        replay.seek((long) replayTime, this);
+
+        movingSlider = true;
+        timeSlider.setValue(replayTime);
+        movingSlider = false;
+        timeText.setText(replay.getTime() + " / " + replay.getEndTime() + " ms");
+    }
+
+    /**
+     * Shows the status and agent of a node at the time of the replay, on the
+     * JavaFX thread
+     *
+     * @param id ID of the node
+     */
+    @Override
+    public void nodeChanged(int id) {
+        GraphNode node = graph.getNode(id);
+        node.restoreStatus(replay.getStatus(id));
+
+        if (canvas != null) {
+            canvas.nodeChanged(id);
+            canvas.setAgent(id, replay.hasAgent(id));
+            return;
         }
 
+        paintNode(node, nodeDisplays[id], node.getStatus());
+
+        // The ring of a node is only created once an agent comes to it
+        Circle ring = replayAgents[id];
+        if (ring == null) {
+            if (!replay.hasAgent(id)) return;
+            ring = createAgentDisplay();
+            replayAgents[id] = ring;
+            centerGroup.getChildren().add(ring);
+        }
+        ring.setVisible(replay.hasAgent(id));
+        paintAgent(node, ring);
+    }
+
+    /**
+     * Shows a delivered report in the base station log while playing, not
+     * while scrubbing
+     *
+     * @param report Report ID
+     * @param station Base station
+     * @param carrier ID of the packet that carried it
+     */
+    @Override
+    public void reportDelivered(int report, int station, int carrier) {
+        if (playing) addToLog("Replay: report " + report + " delivered by packet " + carrier);
     }
 
     /**
@@ -107,4 +510,3 @@ public class GraphDisplay {
     }
 
 }
-
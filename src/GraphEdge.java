@@ -1,14 +1,11 @@
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Line;
-import javafx.util.Pair;
-
 /**
  * Connects the two GraphNodes specified.
  */
 public class GraphEdge {
 
-    // Pair Data structure
-    private Pair<GraphNode, GraphNode> nodePair;
+    // The two connected nodes
+    private GraphNode n1;
+    private GraphNode n2;
 
     /**
      * Create a pair of edges between the GraphNodes
@@ -17,8 +14,8 @@ public class GraphEdge {
      * @param n2 GraphNode2
      */
     GraphEdge(GraphNode n1, GraphNode n2){
-        nodePair = new Pair<>(n1, n2);
-        getOther(n1);
+        this.n1 = n1;
+        this.n2 = n2;
     }
 
     /**
@@ -27,13 +24,13 @@ public class GraphEdge {
      * @param n graphNode
      * @return GraphNode of the other one!
      */
-    private GraphNode getOther(GraphNode n) {
+    public GraphNode getOther(GraphNode n) {
 
         // Gets the other given one node
-        if (n.equals(nodePair.getKey())){
-            return nodePair.getValue();
-        } else if (n.equals(nodePair.getValue())){
-            return nodePair.getKey();
+        if (n.equals(n1)){
+            return n2;
+        } else if (n.equals(n2)){
+            return n1;
         } else {
             return null;
         }
@@ -41,26 +38,21 @@ public class GraphEdge {
     }
 
     /**
-     * Gets the Line that is created between the two GraphNodes
+     * Gets the first GraphNode of the edge
      *
-     * @return GUI Line component
+     * @return GraphNode the edge starts at
      */
-    public Line getLine() {
-        Line l = new Line();
+    public GraphNode getNode1() {
+        return n1;
+    }
 
-        // Set the GUI component
-        l.setStartX(nodePair.getKey().getCoordinate().getX() *
-                                      GraphDisplay.scale);
-        l.setStartY(nodePair.getKey().getCoordinate().getY() *
-                                      GraphDisplay.scale);
-        l.setEndX(nodePair.getValue().getCoordinate().getX() *
-                                      GraphDisplay.scale);
-        l.setEndY(nodePair.getValue().getCoordinate().getY() *
-                                      GraphDisplay.scale);
-        l.setFill(Color.BLACK);
-        l.setStroke(Color.BLACK);
-        l.setStrokeWidth(4);
-        return l;
+    /**
+     * Gets the second GraphNode of the edge
+     *
+     * @return GraphNode the edge ends at
+     */
+    public GraphNode getNode2() {
+        return n2;
     }
 
     /**
@@ -70,7 +62,7 @@ public class GraphEdge {
      */
     @Override
     public String toString() {
-        return nodePair.getKey().toString() + " " + nodePair.getValue();
+        return n1.toString() + " " + n2;
     }
 
 }
@@ -0,0 +1,45 @@
+import java.io.IOException;
+
+/**
+ * Thrown when a graph file can not be read, tells which line is wrong
+ */
+public class GraphFormatException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int line;
+    private final String reason;
+
+
+    /**
+     * Creates the exception for a line of the file
+     *
+     * @param line Line number, starting at 1
+     * @param message What is wrong with the line
+     */
+    GraphFormatException(int line, String message) {
+        super("line " + line + ": " + message);
+        this.line = line;
+        this.reason = message;
+    }
+
+    /**
+     * Creates the same exception further down the file, for parts of a file
+     * that were read on their own
+     *
+     * @param lines Amount of lines before the part
+     * @return Exception with the line number in the whole file
+     */
+    GraphFormatException shift(int lines) {
+        return new GraphFormatException(line + lines, reason);
+    }
+
+    /**
+     * Gets the line the problem was found on
+     *
+     * @return Line number, starting at 1
+     */
+    public int getLine() {
+        return line;
+    }
+}
@@ -1,63 +1,567 @@
-import java.util.ArrayList;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.IntUnaryOperator;
 
 /**
- * PLEASE NOTE:
- * This has no purpose in the scheme of the application but rather a way to
- * generate odd and unpredictable graphs.
+ * Generates large graphs in the text format for stress tests.
  *
+ * Usage: java GraphGen TYPE NODES FILE [--seed=N] [--degree=D] [--rewire=P]
+ * [--fires=N]
+ *
+ * TYPE is one of
+ * - grid: nodes in rows, each connected to the right and below
+ * - geometric: random points connected to every point within a radius,
+ *   found with a spatial hash of cells as wide as the radius
+ * - scalefree: preferential attachment, each new node links to degree/2
+ *   older nodes picked by how many links they already have
+ * - smallworld: a ring where each node links to its degree nearest nodes,
+ *   with every link moved to a random node by chance --rewire (0.1)
+ * - hourglass: two square halves joined by a chain of half of the nodes
+ *
+ * The same seed always gives the same file. Lines are written out as they are
+ * made, only the positions of the geometric graph and the link ends of the
+ * scale free graph are kept, as int arrays. The base station is the first
+ * node and the fires are picked at random, or at the far end of the grid and
+ * the hourglass. FILE can be - for standard out.
  */
 public class GraphGen {
 
-    private static final int NUM_TO_GEN = 30;
-    private static final int SIZE = 12;
-    private static ArrayList<Coordinate> list = new ArrayList<>();
+    // Defaults of the options
+    private static final long DEFAULT_SEED = 1;
+    private static final int DEFAULT_FIRES = 1;
+    private static final double DEFAULT_REWIRE = 0.1;
 
+    // Draws of a small world link before it stays on the ring
+    private static final int MAX_REWIRE_TRIES = 64;
 
-    public static void main(String[] args) {
+    // Points of the geometric graph per cell of its area, lower is sparser
+    private static final int GEOMETRIC_AREA = 4;
 
-        for (int i = 0; i < NUM_TO_GEN; i++) {
-            int w = (int)(Math.random() * SIZE);
-            int h = (int)(Math.random() * SIZE);
+    // Private variables
+    private final LineWriter out;
+    private final SplittableRandom random;
+    private final int nodes;
 
-            Coordinate coord = new Coordinate(w,h);
 
-            if (!list.contains(coord)) {
-                list.add(coord);
-            }
+    /**
+     * Creates a generator writing to a stream
+     *
+     * @param out Stream for the graph lines
+     * @param nodes Amount of nodes to generate
+     * @param seed Seed of the random numbers
+     */
+    GraphGen(OutputStream out, int nodes, long seed) {
+        this.out = new LineWriter(out);
+        this.random = new SplittableRandom(seed);
+        this.nodes = nodes;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: java GraphGen grid|geometric|scalefree|smallworld|hourglass"
+                    + " NODES FILE [--seed=N] [--degree=D] [--rewire=P] [--fires=N]");
+            System.exit(2);
+        }
+
+        String type = args[0];
+        int nodes = Integer.parseInt(args[1]);
+        long seed = DEFAULT_SEED;
+        int degree = 0;
+        double rewire = DEFAULT_REWIRE;
+        int fires = DEFAULT_FIRES;
+        for (int i = 3; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--seed=")) seed = Long.parseLong(arg.substring("--seed=".length()));
+            else if (arg.startsWith("--degree=")) degree = Integer.parseInt(arg.substring("--degree=".length()));
+            else if (arg.startsWith("--rewire=")) rewire = Double.parseDouble(arg.substring("--rewire=".length()));
+            else if (arg.startsWith("--fires=")) fires = Integer.parseInt(arg.substring("--fires=".length()));
+            else throw new IllegalArgumentException("Unknown option: " + arg);
+        }
+        if (nodes < 2) throw new IllegalArgumentException("Need at least 2 nodes");
+
+        OutputStream stream = args[2].equals("-") ? System.out : new FileOutputStream(args[2]);
+        GraphGen gen = new GraphGen(stream, nodes, seed);
+        try {
+            gen.generate(type, degree, rewire, fires);
+        } finally {
+            gen.close();
         }
+    }
+
+    /**
+     * Writes a graph with the default options
+     *
+     * @param type grid, geometric, scalefree, smallworld or hourglass
+     */
+    void generate(String type) throws IOException {
+        generate(type, 0, DEFAULT_REWIRE, DEFAULT_FIRES);
+    }
 
-        for (Coordinate coord : list) {
-            System.out.println("node " + coord);
+    /**
+     * Writes a graph
+     *
+     * @param type grid, geometric, scalefree, smallworld or hourglass
+     * @param degree Average amount of neighbors, 0 for the default of the type
+     * @param rewire Chance of a small world link to be moved
+     * @param fires Amount of fires
+     */
+    void generate(String type, int degree, double rewire, int fires) throws IOException {
+        switch (type) {
+            case "grid":
+                grid(fires);
+                break;
+            case "geometric":
+                geometric(degree > 0 ? degree : 6, fires);
+                break;
+            case "scalefree":
+                scaleFree(degree > 0 ? degree : 4, fires);
+                break;
+            case "smallworld":
+                smallWorld(degree > 0 ? degree : 4, rewire, fires);
+                break;
+            case "hourglass":
+                hourglass(fires);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown graph type: " + type);
         }
+    }
+
+    /**
+     * Writes out what is left and closes the stream, unless it is System.out
+     */
+    void close() throws IOException {
+        out.close();
+    }
 
-        ArrayList<Coordinate> coords = new ArrayList<>();
+    /**
+     * Nodes in rows as wide as the square root of the node count, the last
+     * row may be shorter
+     *
+     * @param fires Amount of fires, the first in the far corner
+     */
+    void grid(int fires) throws IOException {
+        int width = (int) Math.ceil(Math.sqrt(nodes));
+        writeRows(0, 0, width, nodes);
 
-        for (Coordinate coord : list) {
-            int distance = Integer.MAX_VALUE;
-            Coordinate check = null;
+        for (int i = 0; i < nodes; i++) {
+            int x = i % width, y = i / width;
+            if (x + 1 < width && i + 1 < nodes) out.edge(x, y, x + 1, y);
+            if (i + width < nodes) out.edge(x, y, x, y + 1);
+        }
+
+        out.line("station", 0, 0);
+        writeFires(nodes - 1, fires, i -> i % width, i -> i / width);
+    }
 
-            for (Coordinate coordToCheck : list) {
+    /**
+     * Random points on a square with an area of GEOMETRIC_AREA per point,
+     * linked to every other point closer than the radius that gives the
+     * wanted average degree
+     *
+     * @param degree Average amount of neighbors
+     * @param fires Amount of fires
+     */
+    void geometric(int degree, int fires) throws IOException {
+        int side = (int) Math.ceil(Math.sqrt((double) nodes * GEOMETRIC_AREA));
+        double radius = Math.sqrt(degree * GEOMETRIC_AREA / Math.PI);
+        long radiusSquared = (long) Math.floor(radius * radius);
 
-                int distCheck = calcDistance(coord, coordToCheck);
+        // Distinct positions, taken is one bit per spot on the square
+        int[] xs = new int[nodes];
+        int[] ys = new int[nodes];
+        long[] taken = new long[(int) (((long) side * side + 63) / 64)];
+        for (int i = 0; i < nodes; i++) {
+            long spot;
+            do {
+                spot = random.nextLong((long) side * side);
+            } while ((taken[(int) (spot >>> 6)] & (1L << spot)) != 0);
+            taken[(int) (spot >>> 6)] |= 1L << spot;
+            xs[i] = (int) (spot % side);
+            ys[i] = (int) (spot / side);
+            out.line("node", xs[i], ys[i]);
+        }
+        taken = null;
 
-                if (coords.contains(check)
-                        && distCheck != 0
-                        && distance > distCheck) {
+        // Spatial hash, the points of each cell are next to each other in
+        // cellPoints, from cellStart[c] up to cellStart[c + 1]
+        int cell = (int) Math.ceil(radius);
+        int cells = (side + cell - 1) / cell;
+        int[] cellStart = new int[cells * cells + 1];
+        for (int i = 0; i < nodes; i++) cellStart[cellOf(xs[i], ys[i], cell, cells) + 1]++;
+        for (int c = 0; c < cells * cells; c++) cellStart[c + 1] += cellStart[c];
+        int[] fill = cellStart.clone();
+        int[] cellPoints = new int[nodes];
+        for (int i = 0; i < nodes; i++) cellPoints[fill[cellOf(xs[i], ys[i], cell, cells)]++] = i;
+        fill = null;
 
-                    distance = distCheck;
-                    check = coordToCheck;
+        // Only the cells around a point can hold points within the radius,
+        // and each pair is written once, by its lower index
+        for (int i = 0; i < nodes; i++) {
+            int cx = xs[i] / cell, cy = ys[i] / cell;
+            for (int ny = Math.max(0, cy - 1); ny <= Math.min(cells - 1, cy + 1); ny++) {
+                for (int nx = Math.max(0, cx - 1); nx <= Math.min(cells - 1, cx + 1); nx++) {
+                    int c = ny * cells + nx;
+                    for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+                        int j = cellPoints[k];
+                        if (j <= i) continue;
+                        long dx = xs[i] - xs[j], dy = ys[i] - ys[j];
+                        if (dx * dx + dy * dy <= radiusSquared) out.edge(xs[i], ys[i], xs[j], ys[j]);
+                    }
                 }
+            }
+        }
+
+        out.line("station", xs[0], ys[0]);
+        writeFires(-1, fires, i -> xs[i], i -> ys[i]);
+    }
+
+    /**
+     * Gets the cell of the spatial hash a point is in
+     *
+     * @param x x-Coordinate
+     * @param y y-Coordinate
+     * @param cell Width of a cell
+     * @param cells Cells per row
+     * @return Cell index
+     */
+    private static int cellOf(int x, int y, int cell, int cells) {
+        return (y / cell) * cells + x / cell;
+    }
+
+    /**
+     * Preferential attachment. Every link end is kept in one array, so a
+     * node is picked by how many links it has by picking a random end.
+     *
+     * @param degree Average amount of neighbors, each node adds half of them
+     * @param fires Amount of fires
+     */
+    void scaleFree(int degree, int fires) throws IOException {
+        int links = Math.max(1, degree / 2);
+        int width = (int) Math.ceil(Math.sqrt(nodes));
+        writeRows(0, 0, width, nodes);
+
+        // The first links + 1 nodes are all linked to each other
+        int seed = Math.min(nodes, links + 1);
+        int[] ends = new int[2 * (seed * (seed - 1) / 2 + (nodes - seed) * links)];
+        int count = 0;
+        for (int i = 0; i < seed; i++) {
+            for (int j = i + 1; j < seed; j++) {
+                out.edge(i % width, i / width, j % width, j / width);
+                ends[count++] = i;
+                ends[count++] = j;
+            }
+        }
+
+        int[] picked = new int[links];
+        for (int i = seed; i < nodes; i++) {
+            int found = 0;
+            while (found < links) {
+                int target = ends[random.nextInt(count)];
+                if (!contains(picked, found, target)) picked[found++] = target;
+            }
+            for (int k = 0; k < links; k++) {
+                int target = picked[k];
+                out.edge(i % width, i / width, target % width, target / width);
+                ends[count++] = i;
+                ends[count++] = target;
+            }
+        }
+
+        out.line("station", 0, 0);
+        writeFires(-1, fires, i -> i % width, i -> i / width);
+    }
+
+    /**
+     * Watts Strogatz ring, laid out in rows. Each node links to the degree/2
+     * nodes after it on the ring, and each of these links goes to a random
+     * node instead by the given chance. The moved links are remembered so
+     * no edge is written twice.
+     *
+     * @param degree Amount of ring neighbors, even
+     * @param rewire Chance of a link to be moved
+     * @param fires Amount of fires
+     */
+    void smallWorld(int degree, double rewire, int fires) throws IOException {
+        int half = Math.max(1, Math.min(degree / 2, (nodes - 1) / 2));
+        int width = (int) Math.ceil(Math.sqrt(nodes));
+        writeRows(0, 0, width, nodes);
+        EdgeSet moved = new EdgeSet();
 
+        for (int i = 0; i < nodes; i++) {
+            for (int k = 1; k <= half; k++) {
+                int target = (i + k) % nodes;
+
+                // A moved link never lands on the node itself or on a ring
+                // neighbor, nor on a link that was moved before, either way.
+                // A node with no such target left keeps its ring link.
+                if (nodes > 2 * half + 1 && random.nextDouble() < rewire) {
+                    for (int tries = 0; tries < MAX_REWIRE_TRIES; tries++) {
+                        int far = random.nextInt(nodes);
+                        if (ringDistance(i, far) > half && moved.add(i, far)) {
+                            target = far;
+                            break;
+                        }
+                    }
+                }
+                out.edge(i % width, i / width, target % width, target / width);
             }
-            coords.add(check);
-            System.out.println("edge " + coord + " " + check);
         }
 
+        out.line("station", 0, 0);
+        writeFires(-1, fires, i -> i % width, i -> i / width);
+    }
+
+    /**
+     * Gets how far apart two nodes are on the ring
+     *
+     * @param a Node index
+     * @param b Node index
+     * @return Steps along the ring
+     */
+    private int ringDistance(int a, int b) {
+        int d = Math.abs(a - b);
+        return Math.min(d, nodes - d);
+    }
+
+    /**
+     * Two grids of a quarter of the nodes each, joined in the middle of
+     * their facing sides by a chain of the remaining nodes. The station is
+     * in the left grid and the fire starts in the right one, so every
+     * report has to pass through the whole chain.
+     *
+     * @param fires Amount of fires, the first in the far corner
+     */
+    void hourglass(int fires) throws IOException {
+        int side = Math.max(1, (int) Math.floor(Math.sqrt(nodes / 4.0)));
+        int square = side * side;
+        int chain = nodes - 2 * square;
+        int right = side + chain;
+        int middle = side / 2;
 
+        writeRows(0, 0, side, square);
+        for (int i = 0; i < chain; i++) out.line("node", side + i, middle);
+        writeRows(right, 0, side, square);
+
+        writeSquareEdges(0, side);
+        writeSquareEdges(right, side);
+
+        // The chain, from the left grid through every chain node to the
+        // right grid
+        int x = side - 1;
+        for (int i = 0; i <= chain; i++, x++) out.edge(x, middle, x + 1, middle);
+
+        // Node indexes count through the left grid, the chain and the right
+        // grid, the far corner of the right grid is the last one
+        out.line("station", 0, 0);
+        writeFires(nodes - 1, fires,
+                i -> i < square ? i % side : i < square + chain ? side + i - square
+                        : right + (i - square - chain) % side,
+                i -> i < square ? i / side : i < square + chain ? middle
+                        : (i - square - chain) / side);
     }
 
-    private static int calcDistance(Coordinate c1, Coordinate c2) {
-        return ((int)(Math.sqrt(Math.pow(c2.getX()-c1.getX(), 2)
-                + Math.pow(c2.getY()-c1.getY(), 2))));
+    /**
+     * Writes the node lines of nodes laid out in rows
+     *
+     * @param left x-Coordinate of the first column
+     * @param top y-Coordinate of the first row
+     * @param width Nodes per row
+     * @param count Amount of nodes
+     */
+    private void writeRows(int left, int top, int width, int count) throws IOException {
+        for (int i = 0; i < count; i++) out.line("node", left + i % width, top + i / width);
+    }
+
+    /**
+     * Writes the edges of a square grid
+     *
+     * @param left x-Coordinate of the first column
+     * @param side Nodes per row and column
+     */
+    private void writeSquareEdges(int left, int side) throws IOException {
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                if (x + 1 < side) out.edge(left + x, y, left + x + 1, y);
+                if (y + 1 < side) out.edge(left + x, y, left + x, y + 1);
+            }
+        }
+    }
+
+    /**
+     * Writes the fire lines. The first fire is the given node, every other
+     * fire a distinct random node that is not the station.
+     *
+     * @param first Index of the first fire, -1 to pick it at random too
+     * @param fires Amount of fires
+     * @param x x-Coordinate of a node index
+     * @param y y-Coordinate of a node index
+     */
+    private void writeFires(int first, int fires, IntUnaryOperator x, IntUnaryOperator y)
+            throws IOException {
+        fires = Math.min(fires, nodes - 1);
+        int[] picked = new int[fires];
+        int count = 0;
+        if (first >= 0 && fires > 0) picked[count++] = first;
+
+        while (count < fires) {
+            int node = 1 + random.nextInt(nodes - 1);
+            if (!contains(picked, count, node)) picked[count++] = node;
+        }
+        for (int node : picked) out.line("fire", x.applyAsInt(node), y.applyAsInt(node));
+    }
+
+    /**
+     * Checks if an index was picked already
+     *
+     * @param picked Picked indexes
+     * @param count Amount of picked indexes
+     * @param value Index to look for
+     * @return true if it is among the first count
+     */
+    private static boolean contains(int[] picked, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (picked[i] == value) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Set of undirected edges, both ends packed into one long key of an open
+     * addressing table, so millions of them do not need an object each
+     */
+    private static class EdgeSet {
+
+        // Marks a free slot, no edge has both ends at -1
+        private static final long FREE = -1;
+
+        private long[] keys = new long[1024];
+        private int size = 0;
+
+
+        EdgeSet() {
+            Arrays.fill(keys, FREE);
+        }
+
+        /**
+         * Adds an undirected edge
+         *
+         * @param a Node index
+         * @param b Other node index
+         * @return false if the edge was already in the set
+         */
+        boolean add(int a, int b) {
+            long key = (long) Math.min(a, b) << 32 | Math.max(a, b);
+            int slot = find(keys, key);
+            if (keys[slot] == key) return false;
+            keys[slot] = key;
+
+            // Keep the table at most half full
+            if (++size * 2 > keys.length) grow();
+            return true;
+        }
+
+        private void grow() {
+            long[] old = keys;
+            keys = new long[old.length * 2];
+            Arrays.fill(keys, FREE);
+            for (long key : old) if (key != FREE) keys[find(keys, key)] = key;
+        }
+
+        private static int find(long[] table, long key) {
+            int mask = table.length - 1;
+            int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 32) & mask;
+            while (table[slot] != FREE && table[slot] != key) slot = (slot + 1) & mask;
+            return slot;
+        }
+    }
+
+    /**
+     * Writes graph lines into a byte buffer, numbers are written digit by
+     * digit without creating strings
+     */
+    private static class LineWriter implements Closeable {
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[1 << 16];
+        private int size = 0;
+
+
+        LineWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Writes a line with a keyword and a coordinate
+         */
+        void line(String keyword, int x, int y) throws IOException {
+            word(keyword);
+            number(x);
+            number(y);
+            end();
+        }
+
+        /**
+         * Writes an edge line
+         */
+        void edge(int x1, int y1, int x2, int y2) throws IOException {
+            word("edge");
+            number(x1);
+            number(y1);
+            number(x2);
+            number(y2);
+            end();
+        }
+
+        private void word(String word) throws IOException {
+            room(word.length());
+            for (int i = 0; i < word.length(); i++) buffer[size++] = (byte) word.charAt(i);
+        }
+
+        private void number(int value) throws IOException {
+            room(12);
+            buffer[size++] = ' ';
+            if (value < 0) {
+                buffer[size++] = '-';
+                value = -value;
+            }
+            int start = size;
+            do {
+                buffer[size++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+
+            // Digits came out backwards
+            for (int i = start, j = size - 1; i < j; i++, j--) {
+                byte b = buffer[i];
+                buffer[i] = buffer[j];
+                buffer[j] = b;
+            }
+        }
+
+        private void end() throws IOException {
+            room(1);
+            buffer[size++] = '\n';
+        }
+
+        private void room(int bytes) throws IOException {
+            if (size + bytes > buffer.length) flush();
+        }
+
+        private void flush() throws IOException {
+            out.write(buffer, 0, size);
+            size = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            if (out == System.out) out.flush();
+            else out.close();
+        }
     }
 }
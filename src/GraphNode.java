@@ -1,10 +1,7 @@
-import javafx.application.Platform;
-import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
-
 import java.util.ArrayList;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Graph Node for Graph data structure
@@ -12,67 +9,104 @@ import java.util.concurrent.LinkedBlockingQueue;
 public class GraphNode implements Runnable {
 
     // Private variables
-    private ArrayList<GraphNode> adjacentNodes = new ArrayList<>();
+    private GraphNode[] adjacentNodes = new GraphNode[0];
     private Coordinate cords;
-    private NodeStatus status;
-    private Circle display;
-    private MobileAgent mobileAgent;
+    private final int id;
+    private volatile NodeStatus status = NodeStatus.GREEN;
+    private SimulationContext context;
+    private volatile MobileAgent mobileAgent;
     private boolean base = false;
 
-    // Can set for random variance or extend the delay
+    // Route to the base station, maintained by the RoutingTable if used
+    private volatile GraphNode nextHop;
+    private volatile int hops;
+
+    // Can set for random variance or extend the delay, in simulation
+    // milliseconds of the context's clock
     private static long baseDelay = 2500;
     private static long randVariance = 0;
 
-    // Mailbox for message sending
-    private LinkedBlockingQueue<Packet> mailbox = new LinkedBlockingQueue<>();
+    // Compare and set of the status without an AtomicReference per node
+    private static final AtomicReferenceFieldUpdater<GraphNode, NodeStatus> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(GraphNode.class, NodeStatus.class, "status");
+
+    // Agents are attached with a compare and set instead of a lock
+    private static final AtomicReferenceFieldUpdater<GraphNode, MobileAgent> AGENT =
+            AtomicReferenceFieldUpdater.newUpdater(GraphNode.class, MobileAgent.class, "mobileAgent");
+
+    // Mailbox for message sending, and the batch taken out of it
+    private final Mailbox mailbox = new Mailbox();
+    private final ArrayList<Packet> batch = new ArrayList<>();
+
+    // Lock instead of the monitor so virtual threads are not pinned
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeUp = lock.newCondition();
 
 
     /**
      * Creates a GraphNode and initializes the starting values
      *
      * @param coordinate Location of the GraphNode
+     * @param context Simulation the node belongs to
+     * @param id Dense ID of the node within its graph
      */
-    GraphNode(Coordinate coordinate) {
+    GraphNode(Coordinate coordinate, SimulationContext context, int id) {
 
         // Assign the initial values
-        display = new Circle(10);
-        display.setStrokeWidth(3);
         cords = coordinate;
-
-        // Set Status initially, then tell GUI the status
-        this.status = NodeStatus.GREEN;
-        setStatus(NodeStatus.GREEN);
+        this.id = id;
+        this.context = context;
     }
 
     /**
-     * Sets the base and various GUI elements
+     * Sets the node to be the base station
      */
     public void setBase() {
         base = true;
-        display.setStrokeWidth(5);
-        display.setStroke(Color.GRAY);
     }
 
     /**
-     * Add Edge from one node to another.
-     *  - Does not need to be called more than once
+     * Checks if this node is the base station
      *
-     * @param node GraphNode to be added to!
+     * @return true if base station
      */
-    public void addEdge(GraphNode node) {
-        // Adds the node to the ArrayList
-        adjacentNodes.add(node);
+    public boolean isBase() {
+        return base;
+    }
 
-        // Adds this to the nodes array list
-        node.getAdjacentNodes().add(this);
+    /**
+     * Gets the ID of the node, unique and dense within its graph
+     *
+     * @return ID from 0 to the amount of nodes - 1
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the simulation this node belongs to
+     *
+     * @return SimulationContext of the node
+     */
+    public SimulationContext getContext() {
+        return context;
+    }
+
+    /**
+     * Sets the neighbors of the node, done once while building the graph
+     *
+     * @param adjacentNodes Neighbors in the order of the edges
+     */
+    void setAdjacentNodes(GraphNode[] adjacentNodes) {
+        this.adjacentNodes = adjacentNodes;
     }
 
     /**
      * Gets and returns the AdjacentNodes of the graphNode
      *
-     * @return AdjacentNodes found in ArrayList<GraphNode>
+     * @return AdjacentNodes found in GraphNode[], not to be modified
      */
-    public ArrayList<GraphNode> getAdjacentNodes() {
+    public GraphNode[] getAdjacentNodes() {
         return adjacentNodes;
     }
 
@@ -86,71 +120,85 @@ public class GraphNode implements Runnable {
         return cords.toString();
     }
 
+    /**
+     * Gets how long a node in danger takes to catch on fire. The variance
+     * comes from the random numbers of the context, so a seeded run always
+     * draws the same delays.
+     *
+     * @return Delay in milliseconds, including the random variance
+     */
+    long burnDelay() {
+        int random = (randVariance > 0 ? context.getRandom().nextInt((int) randVariance) : 0) + 1;
+        return baseDelay + random;
+    }
+
     /**
      * Gets the status of the node
      *
      * @return NodeStatus of Node
      */
     public NodeStatus getStatus() {
-        // Synchronize on the status in case setStatus is used.
-        synchronized (status) {
-            return status;
-        }
+        return status;
     }
 
     /**
-     * Sets the staus and therefore changing the GUI components
+     * Changes the status if it still is the expected one and the change is
+     * allowed, see NodeStatus.canChangeTo. Only the thread that made the
+     * change tells the listeners and the observer about it.
      *
-     * @param status Status of the Node
+     * @param expected Status the node has to have
+     * @param status New status of the node
+     * @return true if the status was changed
      */
-    public void setStatus(NodeStatus status) {
-        // Synchronize and change the status
-        synchronized (this.status) {
-            this.status = status;
+    public boolean compareAndSetStatus(NodeStatus expected, NodeStatus status) {
+        if (!expected.canChangeTo(status) || !STATUS.compareAndSet(this, expected, status)) {
+            return false;
         }
 
-        // Platform Run Later allows GUI to synchronously execute the display changes
-        Platform.runLater(() -> {
-
-            // Change the color based on the status
-            switch (status) {
-                case GREEN:
-                    display.setFill(Color.BLUE);
-                    if (!base) display.setStroke(Color.DARKBLUE);
-                    break;
-                case YELLOW:
-                    display.setFill(Color.YELLOW);
-                    if (!base) display.setStroke(Color.ORANGE);
-                    break;
-                case RED:
-                    display.setFill(Color.RED);
-                    if (!base) display.setStroke(Color.DARKRED);
-                    break;
-            }
-        });
+        // Traced first, then listeners such as the routing table, then the
+        // observer
+        context.trace(TraceFile.STATUS, id, expected.ordinal(), status.ordinal());
+        context.fireStatusChanged(this, expected, status);
 
+        // Notify potential mobile agent of the status change
+        MobileAgent agent = mobileAgent;
+        if (agent != null) agent.wake();
+        return true;
     }
 
     /**
-     * Gets the coordinate of the GraphNode
+     * Sets the status without checks, listeners, observer or trace, also
+     * backwards. Only for the graph of a TraceReplay, which never runs.
      *
-     * @return Coordinate location of node
+     * @param status Status the replay shows
      */
-    public Coordinate getCoordinate() {
-        return cords;
+    void restoreStatus(NodeStatus status) {
+        this.status = status;
     }
 
+    /**
+     * Moves the status forward, does nothing if the node already has this
+     * status or a later one
+     *
+     * @param status Status of the Node
+     * @return true if the status was changed
+     */
+    public boolean setStatus(NodeStatus status) {
+        NodeStatus current;
+        do {
+            current = this.status;
+            if (!current.canChangeTo(status)) return false;
+        } while (!compareAndSetStatus(current, status));
+        return true;
+    }
 
     /**
-     * Gets the Circle representation of the GraphNode
+     * Gets the coordinate of the GraphNode
      *
-     * @return Circle representing Display
+     * @return Coordinate location of node
      */
-    public Circle getDisplay() {
-        // Set the center and return the Circle component
-        display.setCenterX(getCoordinate().getX() * GraphDisplay.scale);
-        display.setCenterY(getCoordinate().getY() * GraphDisplay.scale);
-        return display;
+    public Coordinate getCoordinate() {
+        return cords;
     }
 
     /**
@@ -159,47 +207,95 @@ public class GraphNode implements Runnable {
      * @param p Packet to be sent
      */
     public void sendMessage(Packet p) {
-        // Remove the item of focus
-        mailbox.remove(p);
+        // Hand the packet over to wherever it goes next
+        GraphNode next = route(p);
+        if (next == null) return;
+        context.getObserver().messageForwarded(p, this, next);
+        if (!next.addPacket(p)) reroute(p, next);
+    }
+
+    /**
+     * Passes a packet refused by a full neighbor on to another neighbor, the
+     * one closest to the base station that is not burning, on the path or
+     * one that refused the packet before
+     *
+     * @param p Packet that was refused
+     * @param full Neighbor that refused it
+     */
+    private void reroute(Packet p, GraphNode full) {
+        // Neither this nor a later node sends it to the full one again
+        p.addTried(full);
 
+        GraphNode best = null;
+        if (p.isMessage()) {
+            for (GraphNode node : adjacentNodes) {
+                if (node == full || node.getStatus() == NodeStatus.RED
+                        || p.contains(node) || p.containsTried(node)) continue;
+                if (best == null || node.getHops() < best.getHops()) best = node;
+            }
+        }
+
+        // Receipts have to go back the way they came, so they are lost
+        if (best != null) context.getObserver().messageForwarded(p, this, best);
+        if (best == null || !best.addPacket(p)) {
+            context.getObserver().messageDropped(p);
+        }
+    }
+
+    /**
+     * Decides where a packet goes next. Shared by the threaded nodes and
+     * the event simulation, which only differ in how the hand over happens.
+     *
+     * @param p Packet to be routed
+     * @return GraphNode the packet is handed to, null if it stops here
+     */
+    GraphNode route(Packet p) {
         // Checks if the node is the base station
         if (base) {
-            // Processes the message of the packet and sets to finished
+            // Processes the message of the packet and sets to finished,
+            // a report the station already has is only counted
             p.setFinished();
-            synchronized (p){
-                Platform.runLater(()->{
-                    GraphDisplay.addToLog(p.getMessage());
-                });
+            for (Packet report : p.getReports()) {
+                context.trace(TraceFile.DELIVERED, report.getID(), id, p.getID());
+                if (context.markDelivered(report)) context.getObserver().messageDelivered(report);
+                else context.getObserver().messageDuplicate(report);
             }
+            return null;
+        }
 
-            return;
+        // With a routing table the next hop is already known
+        RoutingTable table = context.getRoutingTable();
+        if (table != null) {
+            GraphNode next = table.getNextHop(this);
+            if (next == null) context.getObserver().messageDropped(p);
+            return next;
         }
 
         // Checks to see if it needs to be sent to the base station
         if (p.isMessage()) {
 
-            // Count the amount that is navigable
-            int notNavigable = 0;
-
             // Loop through the nodes for checking!
             for (GraphNode node : getAdjacentNodes()) {
                 if (!p.contains(node) && node.getStatus() != NodeStatus.RED &&
                     !p.getStatus() && !p.containsTried(node)) {
 
-                    // Adds to the queue and breaks
+                    // Adds to the queue and sends it there
                     p.addToBQ(this);
-                    node.addPacket(p);
-                    break;
-                } else notNavigable++;
+                    return node;
+                }
             }
 
             // Runs if all possible options have failed, backtracks up a node
             // for further testing/examination
-            if (notNavigable == adjacentNodes.size() && this != p.getSender()) {
+            if (this != p.getSender()) {
                 p.setFail();
-                getReceipt(p);
+                return getReceipt(p);
             }
         }
+
+        // Either a receipt came back or the sender ran out of options
+        context.getObserver().messageDropped(p);
+        return null;
     }
 
     /**
@@ -207,47 +303,121 @@ public class GraphNode implements Runnable {
      * that it has send to.
      *
      * @param p Packet to be processed
+     * @return GraphNode the receipt goes back to, null if there is none
      */
-    private void getReceipt(Packet p) {
+    private GraphNode getReceipt(Packet p) {
         GraphNode next = p.getLast();
 
         // Typically, this involves backtracking to notify the previous of
         // potential failure among the nodes
-        if (adjacentNodes.contains(next)) {
-            next.addPacket(p);
-        } else if (this != next) {
+        for (GraphNode node : adjacentNodes) {
+            if (node == next) {
+                context.trace(TraceFile.RECEIPT, p.getID(), id, next.getId());
+                return next;
+            }
+        }
+        if (this != next) {
             // If it is not contained, then add node back onto the BQ
             p.addToBQ(next);
         }
+        context.trace(TraceFile.RECEIPT, p.getID(), id, -1);
+        return null;
     }
 
     /**
-     * For each message in the mailbox, attempt to process!
+     * For each message in the mailbox, attempt to process! Only called by
+     * the thread of the node.
      */
     private void processMessages() {
-        // Give receipts the highest authority
-        for (Packet p : mailbox) if (p.getStatus()) sendMessage(p);
+        // Receipts come out first, so they have the highest authority
+        if (mailbox.drainTo(batch) == 0) return;
+        if (context.getRoutingTable() != null && !base) aggregate();
+        for (Packet p : batch) sendMessage(p);
+        batch.clear();
+    }
 
-        // Process the rest of the messages (Receipts may be included)
-        for (Packet p : mailbox) sendMessage(p);
+    /**
+     * Merges the messages of the batch into one packet. Only done with a
+     * routing table, where every message at a node takes the same next hop.
+     */
+    private void aggregate() {
+        int messages = 0;
+        for (Packet p : batch) if (p.isMessage()) messages++;
+        if (messages < 2) return;
+
+        ArrayList<Packet> reports = new ArrayList<>(messages);
+        batch.removeIf(p -> p.isMessage() && reports.add(p));
+        batch.add(Packet.batch(reports, this, context.nextPacketId()));
     }
 
 
     /**
-     * Adds the packets to the mailbox and notifies for processing
+     * Adds the packets to the mailbox and notifies for processing. When the
+     * mailbox is full a packet may be dropped, see OverflowPolicy.
      *
      * @param p Packet
+     * @return false if the packet was refused and the sender has to find
+     *         another way, only with the REROUTE policy
      */
-    public void addPacket(Packet p) {
+    public boolean addPacket(Packet p) {
+        return addPacket(p, true);
+    }
+
+    /**
+     * Adds the packets to the mailbox and notifies for processing. When the
+     * mailbox is full a packet may be dropped, see OverflowPolicy.
+     *
+     * @param p Packet
+     * @param mayWait If the sender may wait for room, false for agents so a
+     *                full mailbox does not hold up a thread of their pool
+     * @return false if the packet was refused and the sender has to find
+     *         another way, only with the REROUTE policy
+     */
+    boolean addPacket(Packet p, boolean mayWait) {
         // Add to this's mailbox
-        mailbox.add(p);
+        Packet lost = mailbox.offer(p, mayWait);
+        context.trace(TraceFile.PACKET, p.getID(), id, lost != p ? TraceFile.PACKET_ACCEPTED
+                : mailbox.getPolicy() == OverflowPolicy.REROUTE ? TraceFile.PACKET_REFUSED
+                : TraceFile.PACKET_DROPPED);
 
-        // Synchronize on itself and notify
-        synchronized (this) {
-            this.notify();
+        if (lost == p && mailbox.getPolicy() == OverflowPolicy.REROUTE) return false;
+        if (lost != null) context.getObserver().messageDropped(lost);
+
+        // Notify the thread of the node
+        if (lost != p) wake();
+        return true;
+    }
+
+    /**
+     * Gets the mailbox, for its limit and overflow counters
+     *
+     * @return Mailbox of the node
+     */
+    public Mailbox getMailbox() {
+        return mailbox;
+    }
+
+    /**
+     * Wakes up the thread of the node, so it looks at its mailbox and status
+     */
+    public void wake() {
+        lock.lock();
+        try {
+            wakeUp.signalAll();
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * Puts a GREEN node in danger and wakes it up
+     */
+    private void ignite() {
+        // The thread checks its status under the lock before waiting, so
+        // the signal after the change can not be missed
+        if (compareAndSetStatus(NodeStatus.GREEN, NodeStatus.YELLOW)) wake();
+    }
+
     /**
      * Runs the thread and assumes its respective role as a GraphNode
      *
@@ -256,44 +426,30 @@ public class GraphNode implements Runnable {
      */
     @Override
     public void run() {
-        // Process messages
-        processMessages();
-
         // While the node is green, wait until notified that neighbor is red
         while (getStatus() == NodeStatus.GREEN) {
             try {
-                // Process messages within the mailbox
+                // Process the messages that came in since the last round
                 processMessages();
 
-                // Wait if mailbox is not of proper size
-                if (mailbox.size() == 0) {
-                    synchronized (this) {
-                        wait();
+                // Wait if mailbox is not of proper size, checked while holding
+                // the lock so a wake up can not slip in before the await
+                lock.lock();
+                try {
+                    if (mailbox.isEmpty() && getStatus() == NodeStatus.GREEN) {
+                        wakeUp.await();
                     }
+                } finally {
+                    lock.unlock();
                 }
 
-                // Process messages within the mailbox
-                processMessages();
-
             } catch (InterruptedException e) {
                 e.printStackTrace();
             }
-            // Yields thread to others
-            Thread.yield();
         }
 
         // Checks if the status is green and changes accordingly
-        if (getStatus() == NodeStatus.GREEN) {
-            setStatus(NodeStatus.YELLOW);
-        }
-
-        // Notify potential mobile agent of the status change
-        if (mobileAgent != null) {
-            synchronized (mobileAgent) {
-                // Notify on the mobileAgent
-                mobileAgent.notify();
-            }
-        }
+        compareAndSetStatus(NodeStatus.GREEN, NodeStatus.YELLOW);
 
         // Process any mail traffic
         processMessages();
@@ -308,9 +464,7 @@ public class GraphNode implements Runnable {
 
                 Thread.yield();
 
-                int random = (int)(Math.random() * randVariance)+1;
-
-                Thread.sleep(baseDelay+random);
+                context.getClock().sleep(burnDelay());
 
             } catch (InterruptedException e) {
                 e.printStackTrace();
@@ -322,32 +476,19 @@ public class GraphNode implements Runnable {
         setStatus(NodeStatus.RED);
 
         // Sets the adjacent nodes to yellow
-        for (GraphNode node : adjacentNodes) {
-            synchronized (node) {
-                if (node.getStatus() == NodeStatus.GREEN) {
-                    node.setStatus(NodeStatus.YELLOW);
-                    node.notify();
-                }
-            }
-        }
-
-        // Notify the mobile agent
-        if (mobileAgent != null) {
-            synchronized (mobileAgent) {
-                mobileAgent.notify();
-            }
-        }
+        for (GraphNode node : adjacentNodes) node.ignite();
 
         // Waits for the mobile agents "is dead" message.
         //
         // Can remove this without consequence to the program, its just
         // taking advantage of the "Speak one last time" rule
-        synchronized (this) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+        lock.lock();
+        try {
+            if (mailbox.isEmpty()) wakeUp.await();
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        } finally {
+            lock.unlock();
         }
 
         // Process the last messages from the stuff
@@ -358,13 +499,42 @@ public class GraphNode implements Runnable {
 
     /**
      * Overwrites the hashing algorithm to allow for equality to be checked
-     * in maps.
+     * in maps. Uses the coordinate's hash, no String is built.
      *
      * @return Int of hashcode
      */
     @Override
     public int hashCode() {
-        return toString().hashCode();
+        return cords.hashCode();
+    }
+
+    /**
+     * Sets the route to the base station, used by the RoutingTable
+     *
+     * @param nextHop Next node towards the station, null if none
+     * @param hops Hops to the station
+     */
+    void setRoute(GraphNode nextHop, int hops) {
+        this.nextHop = nextHop;
+        this.hops = hops;
+    }
+
+    /**
+     * Gets the next node towards the base station
+     *
+     * @return GraphNode of the next hop, null if there is no route
+     */
+    GraphNode getNextHop() {
+        return nextHop;
+    }
+
+    /**
+     * Gets the amount of hops to the base station
+     *
+     * @return Hops, RoutingTable.UNREACHABLE without a route
+     */
+    int getHops() {
+        return hops;
     }
 
     /**
@@ -386,35 +556,21 @@ public class GraphNode implements Runnable {
     }
 
     /**
-     * Update the graphics with the given condition
+     * Attaches an agent if the node does not have one yet
      *
-     * @param gc Updates with the GraphicsContext
-     */
-    public void updateGraphics(GraphicsContext gc) {
-
-        // Change the color based on the status
-        switch (status) {
-            case GREEN:
-                gc.setFill(Color.BLUE);
-                break;
-            case YELLOW:
-                gc.setFill(Color.YELLOW);
-                break;
-            case RED:
-                gc.setFill(Color.RED);
-                break;
-                default:
-                    gc.setFill(Color.BLUE);
-        }
-
-        // Fill in the shape
-        gc.fillOval(cords.getX(), cords.getY(), 10, 10);
-
-        // Condition based on mobile agent
-        if (mobileAgent != null){
-            gc.setFill(Color.GREEN);
-            gc.strokeOval(cords.getX(), cords.getY(), 15, 15);
-        }
+     * @param agent Agent to attach
+     * @return false if the node already has an agent
+     */
+    boolean attachAgent(MobileAgent agent) {
+        return AGENT.compareAndSet(this, null, agent);
+    }
 
+    /**
+     * Takes an agent off the node, if it still is the one attached
+     *
+     * @param agent Agent to take off
+     */
+    void detachAgent(MobileAgent agent) {
+        AGENT.compareAndSet(this, agent, null);
     }
 }
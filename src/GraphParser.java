@@ -0,0 +1,321 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Streaming reader of the graph text format:
+ *
+ * node x y
+ * edge x1 y1 x2 y2
+ * station x y
+ * fire x y
+ *
+ * The file is read once, straight from a byte buffer, without keeping the
+ * lines, sorting them or splitting them with a regex. Lines may come in any
+ * order: an edge to a node that has not been listed yet creates it, and the
+ * station and fire lines are only resolved once the whole file is read.
+ * Mistakes are reported as a GraphFormatException with the line number.
+ */
+public class GraphParser {
+
+    // Size of the read buffer
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Private variables
+    private InputStream in;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private int line = 0;
+
+    // Fields of the current line
+    private byte[] keyword = new byte[16];
+    private int keywordLength;
+    private long[] numbers = new long[4];
+    private int numberCount;
+
+    // Station and fire lines, resolved at the end: x, y and line number
+    private int[] station;
+    private int[] fires = new int[12];
+    private int fireCount = 0;
+
+
+    /**
+     * Creates a parser of the given stream
+     *
+     * @param in Stream of the graph text, closed by the caller
+     */
+    GraphParser(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads a graph file
+     *
+     * @param file File to read
+     * @return Topology of the graph
+     * @throws IOException If the file can not be read or is malformed
+     */
+    public static Topology parse(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return new GraphParser(in).parse();
+        }
+    }
+
+    /**
+     * Reads every line of the stream and builds the topology
+     *
+     * @return Topology of the graph
+     * @throws IOException If the stream can not be read or is malformed
+     */
+    public Topology parse() throws IOException {
+        Topology.Builder builder = new Topology.Builder();
+        read(builder);
+
+        // Now that every node is known, place the station and the fire
+        if (station == null) {
+            throw new GraphFormatException(line, "the graph has no station");
+        }
+        builder.setStation(resolve(builder, station, 0, "station"));
+        for (int i = 0; i < fireCount; i += 3) {
+            builder.addFire(resolve(builder, fires, i, "fire"));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Reads every line of the stream into a builder. Node and edge lines are
+     * added straight away, station and fire lines are only saved.
+     *
+     * @param builder Builder to add the nodes and edges to
+     * @throws IOException If the stream can not be read or is malformed
+     */
+    void read(Topology.Builder builder) throws IOException {
+        while (nextLine()) {
+            // Blank lines are skipped
+            if (keywordLength == 0) continue;
+
+            if (isKeyword("node")) {
+                expectNumbers(2, "node x y");
+                builder.addNode(number(0), number(1));
+
+            } else if (isKeyword("edge")) {
+                expectNumbers(4, "edge x1 y1 x2 y2");
+                int n2 = builder.addNode(number(2), number(3));
+                int n1 = builder.addNode(number(0), number(1));
+                builder.addEdge(n1, n2);
+
+            } else if (isKeyword("station")) {
+                expectNumbers(2, "station x y");
+                station = new int[] {number(0), number(1), line};
+
+            } else if (isKeyword("fire")) {
+                expectNumbers(2, "fire x y");
+                if (fireCount + 3 > fires.length) {
+                    fires = Arrays.copyOf(fires, fires.length * 2);
+                }
+                fires[fireCount++] = number(0);
+                fires[fireCount++] = number(1);
+                fires[fireCount++] = line;
+
+            } else {
+                String word = new String(keyword, 0,
+                        Math.min(keywordLength, keyword.length), "US-ASCII");
+                throw new GraphFormatException(line,
+                        "unknown line type '" + word + "'");
+            }
+        }
+    }
+
+    /**
+     * Gets the last station line read
+     *
+     * @return x, y and line number of the station, null if there was none
+     */
+    int[] getStationLine() {
+        return station;
+    }
+
+    /**
+     * Gets the fire lines read
+     *
+     * @return x, y and line number of every fire one after another
+     */
+    int[] getFireLines() {
+        return Arrays.copyOf(fires, fireCount);
+    }
+
+    /**
+     * Gets the amount of lines read so far
+     *
+     * @return Number of the last line read
+     */
+    int getLineCount() {
+        return line;
+    }
+
+    /**
+     * Finds the node a station or fire line refers to
+     *
+     * @param builder Builder holding every node
+     * @param refs Saved references, x, y and line number one after another
+     * @param at Index of the x of the reference
+     * @param type Type of line, for the message
+     * @return Node ID
+     * @throws GraphFormatException If there is no such node
+     */
+    private static int resolve(Topology.Builder builder, int[] refs, int at,
+                               String type) throws GraphFormatException {
+        int id = builder.find(refs[at], refs[at + 1]);
+        if (id < 0) {
+            throw new GraphFormatException(refs[at + 2], type + " " + refs[at]
+                    + " " + refs[at + 1] + " is not a node of the graph");
+        }
+        return id;
+    }
+
+    /**
+     * Reads the next line into the keyword and numbers
+     *
+     * @return false at the end of the stream
+     * @throws IOException If the stream can not be read or a field is bad
+     */
+    private boolean nextLine() throws IOException {
+        keywordLength = 0;
+        numberCount = 0;
+        if (!fill()) return false;
+        line++;
+
+        int field = 0;
+        while (fill()) {
+            byte b = buffer[position];
+            if (b == '\n') {
+                position++;
+                break;
+            } else if (b == ' ' || b == '\t' || b == '\r') {
+                position++;
+            } else if (field == 0) {
+                readKeyword();
+                field++;
+            } else {
+                readNumber();
+                field++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the first word of a line
+     *
+     * @throws IOException If the stream can not be read
+     */
+    private void readKeyword() throws IOException {
+        while (fill() && !isSeparator(buffer[position])) {
+            if (keywordLength < keyword.length) {
+                keyword[keywordLength] = buffer[position];
+            }
+            keywordLength++;
+            position++;
+        }
+    }
+
+    /**
+     * Reads a whole number, with an optional minus sign
+     *
+     * @throws IOException If the stream can not be read or it is no number
+     */
+    private void readNumber() throws IOException {
+        boolean negative = buffer[position] == '-';
+        if (negative) position++;
+
+        long value = 0;
+        int digits = 0;
+        while (fill() && !isSeparator(buffer[position])) {
+            int digit = buffer[position] - '0';
+            if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) {
+                throw new GraphFormatException(line, "expected a number");
+            }
+            value = value * 10 + digit;
+            digits++;
+            position++;
+        }
+        if (digits == 0 || value > Integer.MAX_VALUE) {
+            throw new GraphFormatException(line, "expected a number");
+        }
+
+        // Extra numbers are counted but not kept, so the check can complain
+        if (numberCount < numbers.length) {
+            numbers[numberCount] = negative ? -value : value;
+        }
+        numberCount++;
+    }
+
+    /**
+     * Checks the current line has the right amount of numbers
+     *
+     * @param count Amount of numbers expected
+     * @param usage Expected form of the line, for the message
+     * @throws GraphFormatException If the amount is wrong
+     */
+    private void expectNumbers(int count, String usage) throws GraphFormatException {
+        if (numberCount != count) {
+            throw new GraphFormatException(line, "expected '" + usage + "'");
+        }
+    }
+
+    /**
+     * Gets a number of the current line
+     *
+     * @param index Index of the number
+     * @return Number as int
+     */
+    private int number(int index) {
+        return (int) numbers[index];
+    }
+
+    /**
+     * Checks if the keyword of the current line is the given word
+     *
+     * @param word Word to compare with, plain ASCII
+     * @return true if equal
+     */
+    private boolean isKeyword(String word) {
+        if (keywordLength != word.length()) return false;
+        for (int i = 0; i < keywordLength; i++) {
+            if (keyword[i] != word.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a byte ends a field
+     *
+     * @param b Byte to check
+     * @return true for white space and line ends
+     */
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * Makes sure there is at least one byte left in the buffer
+     *
+     * @return false at the end of the stream
+     * @throws IOException If the stream can not be read
+     */
+    private boolean fill() throws IOException {
+        if (position < limit) return true;
+
+        limit = in.read(buffer);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+}
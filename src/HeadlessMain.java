@@ -0,0 +1,376 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Runs the simulation without any GUI and prints a summary per graph.
+ *
+ * Usage: java HeadlessMain [--events|--virtual] resources/sample.txt [more]
+ *
+ * --events runs the discrete event simulation on a single thread with a
+ * virtual clock instead of one thread per node.
+ * --virtual keeps one thread per node, but uses virtual threads
+ * (Java 21 or newer), it can not be combined with --events.
+ * --clock=real|FACTOR sets the clock of the threaded runs, for
+ * example --clock=1000 runs a thousand times faster than real time.
+ * --routing=table sends packets along a shortest path routing table instead
+ * of searching with receipts.
+ * --walk=random|nearest|gradient picks how the first agent finds the fire:
+ * a bounded random walk (default), a breadth first search, or a greedy walk
+ * towards the starting fires.
+ * --mailbox=CAPACITY[:POLICY] bounds the mailbox of every node of the
+ * threaded runs, POLICY is drop-oldest (default), drop-duplicate-status,
+ * block or reroute.
+ * --trace=FILE records every event of the run into a binary TraceFile, a
+ * later graph on the command line replaces the trace of the one before.
+ * --seed=N seeds every random choice. With --events the run is then the same
+ * every time, and the summary shows a digest of all its events to compare
+ * runs by. Threaded runs still vary with the scheduling of their threads.
+ *
+ * Agents that died with their node are reused for new clones, nothing here
+ * keeps per agent state.
+ *
+ * Nothing here touches JavaFX, so it can run on machines without a display.
+ */
+public class HeadlessMain {
+
+    // How often the simulation is checked and how long it must stay quiet
+    private static final long POLL_MILLIS = 50;
+    private static final long QUIET_MILLIS = 500;
+
+    // Why --events and --virtual do not go together
+    private static final String NO_THREADS = "--events runs without node threads, drop --virtual";
+
+
+    // Private variables set by the command line
+    private static boolean events = false;
+    private static ExecutionMode mode = ExecutionMode.PLATFORM;
+    private static String clock = "real";
+    private static RoutingMode routing = RoutingMode.SEARCH;
+    private static String walk = "random";
+    private static int mailboxCapacity = Integer.MAX_VALUE;
+    private static OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private static Long seed = null;
+    private static String trace = null;
+
+
+    /**
+     * Runs every graph given on the command line one after another
+     *
+     * @param args Options and paths of graph files
+     */
+    public static void main(String[] args) throws InterruptedException {
+        boolean ran = false;
+
+        for (String arg : args) {
+            // Options change how the following graphs are run
+            try {
+                if (parseOption(arg)) continue;
+            } catch (IllegalArgumentException e) {
+                System.err.println("Bad option " + arg + ": " + e.getMessage());
+                usage();
+            }
+
+            File file = new File(arg);
+            if (!file.isFile()) {
+                System.err.println("No such graph file: " + arg);
+                System.exit(1);
+            }
+
+            try {
+                if (events) runEvents(file);
+                else run(file);
+            } catch (IOException e) {
+                System.err.println(file + ": " + e.getMessage());
+                System.exit(1);
+            }
+            ran = true;
+        }
+
+        if (!ran) usage();
+
+        // Node threads wait forever once burnt down, so end them here
+        System.exit(0);
+    }
+
+    /**
+     * Reads an option of the command line
+     *
+     * @param arg Argument of the command line
+     * @return true if it was an option, false for a graph file
+     * @throws IllegalArgumentException If the value of the option is bad
+     */
+    private static boolean parseOption(String arg) {
+        if (arg.equals("--events")) {
+            if (mode == ExecutionMode.VIRTUAL) throw new IllegalArgumentException(NO_THREADS);
+            events = true;
+        } else if (arg.equals("--virtual")) {
+            if (events) throw new IllegalArgumentException(NO_THREADS);
+            if (!ExecutionMode.VIRTUAL.isAvailable()) {
+                throw new IllegalArgumentException("virtual threads need Java 21 or newer, this is Java "
+                        + System.getProperty("java.version"));
+            }
+            mode = ExecutionMode.VIRTUAL;
+        } else if (arg.startsWith("--clock=")) {
+            clock = arg.substring("--clock=".length());
+
+            // Made once here so a bad factor is reported as an option
+            createClock();
+        } else if (arg.startsWith("--routing=")) {
+            routing = RoutingMode.valueOf(
+                    arg.substring("--routing=".length()).toUpperCase());
+        } else if (arg.startsWith("--walk=")) {
+            walk = arg.substring("--walk=".length());
+            if (!walk.equals("random") && !walk.equals("nearest") && !walk.equals("gradient")) {
+                throw new IllegalArgumentException("unknown walk " + walk);
+            }
+        } else if (arg.startsWith("--mailbox=")) {
+            String[] limit = arg.substring("--mailbox=".length()).split(":");
+            mailboxCapacity = Integer.parseInt(limit[0]);
+            if (limit.length > 1) {
+                overflowPolicy = OverflowPolicy.valueOf(
+                        limit[1].replace('-', '_').toUpperCase());
+            }
+        } else if (arg.startsWith("--trace=")) {
+            trace = arg.substring("--trace=".length());
+        } else if (arg.startsWith("--seed=")) {
+            seed = Long.parseLong(arg.substring("--seed=".length()));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Prints how to run it and exits
+     */
+    private static void usage() {
+        System.err.println("Usage: java HeadlessMain [--events|--virtual] [--clock=real|FACTOR]"
+                + " [--routing=search|table] [--walk=random|nearest|gradient]"
+                + " [--mailbox=CAPACITY[:POLICY]] [--seed=N] [--trace=FILE] <graph file>...");
+        System.exit(2);
+    }
+
+    /**
+     * Loads a graph file, it needs a base station for the first agent
+     *
+     * @param file Graph file to simulate
+     * @return Graph of the file
+     * @throws IOException If the file can not be read or has no station
+     */
+    private static Graph load(File file) throws IOException {
+        Graph graph = new Graph(file);
+        if (graph.getStation() == null) throw new IOException("the graph has no station");
+        return graph;
+    }
+
+    /**
+     * Loads one graph, runs it to completion and prints the statistics
+     *
+     * @param file Graph file to simulate
+     */
+    private static void run(File file) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+
+        // Load the graph and observe it with the statistics
+        Graph graph = load(file);
+        SimulationStats stats = new SimulationStats();
+        graph.setObserver(stats);
+        graph.setRoutingMode(routing);
+        graph.getContext().setWalkStrategy(createWalk(graph));
+        graph.getContext().setAgentPool(new AgentPool());
+        if (seed != null) graph.getContext().setSeed(seed);
+        graph.getContext().setExecutionMode(mode);
+        graph.getContext().setClock(createClock());
+        if (mailboxCapacity != Integer.MAX_VALUE) {
+            graph.setMailboxLimit(mailboxCapacity, overflowPolicy);
+        }
+
+        TraceRecorder recorder = startTrace(file, graph);
+
+        // Deploy the first agent and start the simulation
+        new MobileAgent(graph.getStation(), true);
+        graph.startThreads();
+
+        awaitCompletion(graph, stats);
+
+        print(file, graph, stats, start, mailboxSummary(graph) + " | simulated time: "
+                + graph.getContext().now() + " ms" + endTrace(recorder));
+    }
+
+    /**
+     * Sums up the overflow counters of the bounded mailboxes
+     *
+     * @param graph Finished graph
+     * @return Text for the summary line, empty for unbounded mailboxes
+     */
+    private static String mailboxSummary(Graph graph) {
+        if (mailboxCapacity == Integer.MAX_VALUE) return "";
+
+        long dropped = 0, blocked = 0, rerouted = 0;
+        int peak = 0;
+        for (GraphNode node : graph.getNodes()) {
+            Mailbox mailbox = node.getMailbox();
+            dropped += mailbox.getDropped();
+            blocked += mailbox.getBlocked();
+            rerouted += mailbox.getRerouted();
+            peak = Math.max(peak, mailbox.getPeak());
+        }
+        return " | overflow dropped: " + dropped + " | blocked: " + blocked
+                + " | rerouted: " + rerouted + " | peak mailbox: " + peak;
+    }
+
+    /**
+     * Creates the walk strategy chosen on the command line
+     *
+     * @param graph Graph to walk on
+     * @return WalkStrategy for the first agent
+     */
+    private static WalkStrategy createWalk(Graph graph) {
+        switch (walk) {
+            case "nearest":
+                return WalkStrategy.nearest();
+            case "gradient":
+                return WalkStrategy.gradient(graph.getTopology(), WalkStrategy.DEFAULT_STEPS);
+            case "random":
+                return WalkStrategy.random(WalkStrategy.DEFAULT_STEPS);
+            default:
+                throw new IllegalArgumentException("Unknown walk: " + walk);
+        }
+    }
+
+    /**
+     * Creates the clock chosen on the command line
+     *
+     * @return SimulationClock for a threaded run
+     */
+    private static SimulationClock createClock() {
+        switch (clock) {
+            case "real":
+                return SimulationClock.realTime();
+            case "virtual":
+                throw new IllegalArgumentException("threaded runs have no virtual clock, use --events");
+            default:
+                return SimulationClock.scaled(Double.parseDouble(clock));
+        }
+    }
+
+    /**
+     * Loads one graph and runs it with the discrete event simulation
+     *
+     * @param file Graph file to simulate
+     */
+    private static void runEvents(File file) throws IOException {
+        long start = System.nanoTime();
+
+        // Load the graph and observe it with the statistics
+        Graph graph = load(file);
+        SimulationStats stats = new SimulationStats();
+        graph.setObserver(stats);
+        graph.setRoutingMode(routing);
+        graph.getContext().setWalkStrategy(createWalk(graph));
+        graph.getContext().setAgentPool(new AgentPool());
+
+        // A seeded run is the same every time, the digest shows it
+        TraceDigest digest = null;
+        if (seed != null) {
+            graph.getContext().setSeed(seed);
+            digest = new TraceDigest(graph.getContext(), stats);
+            graph.setObserver(digest);
+        }
+
+        TraceRecorder recorder = startTrace(file, graph);
+
+        // Deploy the first agent and run every event
+        EventSimulation simulation = new EventSimulation(graph);
+        simulation.deploy();
+        long virtual = simulation.run();
+
+        print(file, graph, stats, start, " | events: "
+                + simulation.getProcessed()
+                + " | simulated time: " + virtual + " ms"
+                + (digest == null ? "" : String.format(" | seed: %d | digest: %016x", seed, digest.getDigest()))
+                + endTrace(recorder));
+    }
+
+    /**
+     * Starts recording the run if a trace file was given
+     *
+     * @param file Graph file of the run
+     * @param graph Graph about to run
+     * @return TraceRecorder, null if there is no trace
+     */
+    private static TraceRecorder startTrace(File file, Graph graph) throws IOException {
+        if (trace == null) return null;
+
+        TraceRecorder recorder = new TraceRecorder(new File(trace),
+                graph.getNodeCount(), file.getAbsolutePath());
+        graph.getContext().setTraceRecorder(recorder);
+        return recorder;
+    }
+
+    /**
+     * Closes the trace of a finished run
+     *
+     * @param recorder TraceRecorder of the run, may be null
+     * @return Text for the summary line, empty without a trace
+     */
+    private static String endTrace(TraceRecorder recorder) throws IOException {
+        if (recorder == null) return "";
+
+        recorder.close();
+        return " | trace records: " + recorder.getRecordCount();
+    }
+
+    /**
+     * Prints the summary line of a finished run
+     *
+     * @param file Graph file that was simulated
+     * @param graph Finished graph
+     * @param stats Statistics of the run
+     * @param start System.nanoTime of the start of the run
+     * @param extra Extra text appended to the line
+     */
+    private static void print(File file, Graph graph, SimulationStats stats,
+                              long start, String extra) {
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(file.getName()
+                + " | nodes: " + graph.getNodes().size()
+                + " | edges: " + graph.getEdges().size()
+                + " | yellow: " + stats.getYellowCount()
+                + " | red: " + stats.getRedCount()
+                + " | agents: " + stats.getAgentCount()
+                + " | delivered: " + stats.getDeliveredCount()
+                + " | dropped: " + stats.getDroppedCount()
+                + " | duplicates: " + stats.getDuplicateCount()
+                + " | hops: " + stats.getHopCount()
+                + " | walk steps: " + graph.getContext().getWalkStrategy().getSteps()
+                + " | agents reused: " + graph.getContext().getAgentPool().getReused()
+                + " | time: " + millis + " ms" + extra);
+    }
+
+    /**
+     * Waits until no node is in danger and nothing has been observed for a
+     * while, which gives the last packets time to reach the base station
+     *
+     * @param graph Running graph
+     * @param stats Statistics observing the graph
+     */
+    private static void awaitCompletion(Graph graph, SimulationStats stats)
+            throws InterruptedException {
+        int lastChanges = -1;
+        long quietSince = System.currentTimeMillis();
+
+        while (true) {
+            Thread.sleep(POLL_MILLIS);
+
+            // Any activity restarts the quiet period
+            int changes = stats.getChangeCount();
+            if (changes != lastChanges || graph.isActive()) {
+                lastChanges = changes;
+                quietSince = System.currentTimeMillis();
+            } else if (System.currentTimeMillis() - quietSince >= QUIET_MILLIS) {
+                return;
+            }
+        }
+    }
+}
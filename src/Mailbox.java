@@ -0,0 +1,276 @@
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mailbox of a GraphNode with a lane for receipts and one for messages.
+ *
+ * Any thread can add packets, only the node takes them out, a whole batch at
+ * a time with the receipts first. Adding and taking out a packet are O(1),
+ * so a node only spends time on packets that are new.
+ *
+ * A mailbox is unbounded until setLimit gives it a capacity. A full mailbox
+ * then handles new packets by its OverflowPolicy and counts what happened.
+ */
+public class Mailbox {
+
+    // Longest a sender waits for room with the BLOCK policy, in real time,
+    // so two full nodes sending to each other can not wait forever
+    public static final long BLOCK_MILLIS = 1000;
+
+    // Private variables
+    private final Queue<Packet> receipts = new ConcurrentLinkedQueue<>();
+    private final Queue<Packet> messages = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    // Limit, only used once the capacity is bounded
+    private volatile int capacity = Integer.MAX_VALUE;
+    private volatile OverflowPolicy policy = OverflowPolicy.DROP_OLDEST;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+
+    // Counters of the overflows
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong rerouted = new AtomicLong();
+    private final AtomicInteger peak = new AtomicInteger();
+
+
+    /**
+     * Bounds the mailbox, set before the simulation starts
+     *
+     * @param capacity Most packets waiting at once, Integer.MAX_VALUE for none
+     * @param policy What to do with packets that do not fit
+     */
+    public void setLimit(int capacity, OverflowPolicy policy) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity " + capacity);
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * Gets the policy used when the mailbox is full
+     *
+     * @return OverflowPolicy of the mailbox
+     */
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Adds a packet to the lane of its kind, the way the policy says if the
+     * mailbox is full
+     *
+     * @param p Packet to add
+     * @return The packet that did not make it, p itself or an older one that
+     *         was dropped for it, null if nothing was lost
+     */
+    public Packet offer(Packet p) {
+        return offer(p, true);
+    }
+
+    /**
+     * Adds a packet to the lane of its kind, the way the policy says if the
+     * mailbox is full
+     *
+     * @param p Packet to add
+     * @param mayWait If the sender may wait for room with the BLOCK policy,
+     *                otherwise the packet is dropped right away
+     * @return The packet that did not make it, p itself or an older one that
+     *         was dropped for it, null if nothing was lost
+     */
+    public Packet offer(Packet p, boolean mayWait) {
+        if (capacity == Integer.MAX_VALUE) {
+            add(p);
+            return null;
+        }
+
+        lock.lock();
+        try {
+            if (size.get() < capacity) {
+                add(p);
+                return null;
+            }
+
+            switch (policy) {
+                case DROP_OLDEST:
+                    // The lanes can be empty while the node drains them
+                    Packet oldest = messages.poll();
+                    if (oldest == null) oldest = receipts.poll();
+                    if (oldest != null) {
+                        size.decrementAndGet();
+                        dropped.incrementAndGet();
+                    }
+                    add(p);
+                    return oldest;
+
+                case DROP_DUPLICATE_STATUS:
+                    Packet duplicate = removeDuplicate(p);
+                    if (duplicate != null) add(p);
+                    dropped.incrementAndGet();
+                    return duplicate != null ? duplicate : p;
+
+                case BLOCK:
+                    if (!mayWait) {
+                        dropped.incrementAndGet();
+                        return p;
+                    }
+                    blocked.incrementAndGet();
+                    long nanos = TimeUnit.MILLISECONDS.toNanos(BLOCK_MILLIS);
+                    while (size.get() >= capacity && nanos > 0) {
+                        nanos = notFull.awaitNanos(nanos);
+                    }
+                    if (size.get() < capacity) {
+                        add(p);
+                        return null;
+                    }
+                    dropped.incrementAndGet();
+                    return p;
+
+                default:
+                    rerouted.incrementAndGet();
+                    return p;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+            return p;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes out every packet, receipts first and then messages, each in the
+     * order they came in
+     *
+     * @param batch Collection the packets are added to
+     * @return Amount of packets taken out
+     */
+    public int drainTo(Collection<Packet> batch) {
+        int count = drain(receipts, batch) + drain(messages, batch);
+
+        // Let blocked senders in
+        if (count > 0 && policy == OverflowPolicy.BLOCK && capacity != Integer.MAX_VALUE) {
+            lock.lock();
+            try {
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks if there are packets waiting
+     *
+     * @return true if both lanes are empty
+     */
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    /**
+     * Gets the amount of packets waiting
+     *
+     * @return Packets in both lanes
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Gets the amount of packets dropped because the mailbox was full
+     *
+     * @return Dropped packets
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets how often a sender had to wait for room
+     *
+     * @return Blocked sends
+     */
+    public long getBlocked() {
+        return blocked.get();
+    }
+
+    /**
+     * Gets the amount of packets refused to be sent another way
+     *
+     * @return Rerouted packets
+     */
+    public long getRerouted() {
+        return rerouted.get();
+    }
+
+    /**
+     * Gets the most packets that were waiting at once
+     *
+     * @return Largest size seen
+     */
+    public int getPeak() {
+        return peak.get();
+    }
+
+    /**
+     * Adds a packet to its lane and counts it
+     *
+     * @param p Packet to add
+     */
+    private void add(Packet p) {
+        if (p.isMessage()) messages.add(p);
+        else receipts.add(p);
+        peak.accumulateAndGet(size.incrementAndGet(), Math::max);
+    }
+
+    /**
+     * Removes a waiting report of the same status of the same node as a new
+     * one. A batch is never a duplicate, even of a batch of the same size.
+     *
+     * @param p New packet
+     * @return The waiting packet that was removed, null if there is none
+     */
+    private Packet removeDuplicate(Packet p) {
+        if (!p.isMessage() || p.getReportedStatus() == null) return null;
+
+        for (Iterator<Packet> it = messages.iterator(); it.hasNext(); ) {
+            Packet waiting = it.next();
+            if (waiting.getReportedStatus() == p.getReportedStatus()
+                    && waiting.getReportedNode() == p.getReportedNode()
+                    && messages.remove(waiting)) {
+                size.decrementAndGet();
+                return waiting;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes out every packet of a lane. The size goes down with every packet,
+     * so a sender never sees a full mailbox with empty lanes.
+     *
+     * @param lane Lane to empty
+     * @param batch Collection the packets are added to
+     * @return Amount of packets taken out
+     */
+    private int drain(Queue<Packet> lane, Collection<Packet> batch) {
+        int count = 0;
+        Packet p;
+        while ((p = lane.poll()) != null) {
+            size.decrementAndGet();
+            batch.add(p);
+            count++;
+        }
+        return count;
+    }
+}
@@ -16,10 +16,14 @@ import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 
 /**
  * Main class that coordinates all of the other components
+ *
+ * A recorded run can be replayed with the Replay button or with
+ * java Main --replay=run.trace
  */
 public class Main extends Application {
 
@@ -58,6 +62,13 @@ public class Main extends Application {
         primaryStage.setTitle("Mobile Agents");
         primaryStage.setScene(introScene());
         primaryStage.show();
+
+        // A trace on the command line is replayed right away
+        for (String arg : getParameters().getRaw()) {
+            if (arg.startsWith("--replay=")) {
+                showReplay(new File(arg.substring("--replay=".length())));
+            }
+        }
     }
 
     /**
@@ -65,16 +76,18 @@ public class Main extends Application {
      *
      * @param file File of the emulation configuration file
      * @return A Graph class
+     * @throws IOException If the file can not be read or is malformed
      */
-    private Graph initGraph(File file){
+    private Graph initGraph(File file) throws IOException {
         // Initialize gragh data structure
         Graph graph = new Graph(file);
 
-        // Display graph
+        // Display graph and let it observe the simulation
         graphDisplay = new GraphDisplay(graph);
+        graph.setObserver(graphDisplay);
 
         // Opted for getStation so that it can be used by the initial baseStation
-        new MobileAgent(graph.getStation(), graphDisplay,  true);
+        new MobileAgent(graph.getStation(), true);
 
         // Start simulation
         graph.startThreads();
@@ -82,6 +95,51 @@ public class Main extends Application {
         return graph;
     }
 
+    /**
+     * Loads the graph of a recorded run and shows it in a replay, the
+     * simulation is not run
+     *
+     * @param traceFile TraceFile of the run
+     * @throws IOException If the trace or its graph can not be read
+     */
+    private void initReplay(File traceFile) throws IOException {
+        TraceFile trace = new TraceFile(traceFile);
+
+        // A trace made on another machine may have its graph elsewhere, look
+        // in resources and then ask
+        File graphFile = new File(trace.getGraphPath());
+        if (!graphFile.isFile()) graphFile = new File("resources", graphFile.getName());
+        if (!graphFile.isFile()) {
+            FileChooser fileChooser = new FileChooser();
+            fileChooser.setTitle("Graph of " + traceFile.getName());
+            graphFile = fileChooser.showOpenDialog(window);
+            if (graphFile == null) throw new IOException("no graph file for the trace");
+        }
+
+        Graph graph = new Graph(graphFile);
+        if (graph.getNodeCount() != trace.getNodeCount()) {
+            throw new IOException(graphFile.getName() + " is not the graph of the trace");
+        }
+
+        graphDisplay = new GraphDisplay(graph);
+        graphDisplay.replay(new TraceReplay(trace, graph));
+    }
+
+    /**
+     * Replays a trace, or tells the user why it can not be
+     *
+     * @param traceFile TraceFile of the run
+     */
+    private void showReplay(File traceFile) {
+        try {
+            initReplay(traceFile);
+        } catch (IOException e) {
+            selectedFileText.setText("Could not replay, " + e.getMessage());
+            return;
+        }
+        window.setScene(new Scene(graphDisplay.getRoot(), WIDTH, HEIGHT));
+    }
+
     /**
      * Introduces the scence
      *
@@ -146,6 +204,16 @@ public class Main extends Application {
             selectedFileText.setText(fileSelectionStr.substring(0, fileSelectionStr.length() - 4));
         });
 
+        // Button that replays a recorded run instead of simulating
+        Button replayButton = new Button("Replay");
+        replayButton.setStyle(buttonStyle);
+        replayButton.setOnAction(event -> {
+            FileChooser fileChooser = new FileChooser();
+            fileChooser.setTitle("Open Trace");
+            File traceFile = fileChooser.showOpenDialog(window);
+            if (traceFile != null) showReplay(traceFile);
+        });
+
         //Add everything to the scene root
         introRoot.setAlignment(Pos.CENTER);
         introRoot.setHgap(25);
@@ -156,6 +224,7 @@ public class Main extends Application {
         introRoot.add(selectedFileText,1,4);
         introRoot.add(startButton, 2,2);
         introRoot.add(infoBoxButton, 3,2);
+        introRoot.add(replayButton, 2,3);
 
         // Return the scene
         return new Scene(introRoot, WIDTH, HEIGHT);
@@ -198,7 +267,13 @@ public class Main extends Application {
 
                 //If a file is selected, load up Graph and start the simulation
                 if (fileSelection != null){
-                    initGraph(fileSelection);
+                    try {
+                        initGraph(fileSelection);
+                    } catch (IOException e) {
+                        // Tell the user what is wrong with the file
+                        selectedFileText.setText("Could not load, " + e.getMessage());
+                        return;
+                    }
                     window.setScene(new Scene(graphDisplay.getRoot(),WIDTH, HEIGHT));
                 } else {
                     selectedFileText.setText("Please Choose File");
@@ -225,7 +300,7 @@ public class Main extends Application {
     /**
      * Call the function required for the GUI
      *
-     * @param args Potential CLA, (Not used in this application)
+     * @param args Potential CLA, --replay=FILE replays a trace
      */
     public static void main(String[] args) {
         launch(args);
@@ -1,39 +1,30 @@
-import javafx.application.Platform;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Mobile agent class
+ *
+ * An agent is a small state object without a thread of its own. Whenever
+ * the status of its node changes it is run on the agent executor of the
+ * context, does what the new status asks for and returns. Clones are
+ * attached to their node with a compare and set and can come out of the
+ * AgentPool of the context.
  */
 public class MobileAgent implements Runnable {
 
-    // Private variables for the class
-    private static GraphDisplay gd = null;
-    private GraphNode node;
-    private Thread thread;
-    private Circle display;
-
+    // How far the agent got, see run
+    private static final int NEW = 0;
+    private static final int ON_BLUE = 1;
+    private static final int ON_YELLOW = 2;
+    private static final int DEAD = 3;
 
-    /**
-     * sets the Graph Display and calls other constructor
-     * @param node GraphNode attached to
-     * @param gd GD to update to
-     * @param init true if walk is required, false if not
-     */
-    MobileAgent(GraphNode node, GraphDisplay gd, boolean init) {
-        this(node, init);
-        singletonGD(gd);
+    // Private variables for the class
+    private volatile GraphNode node;
+    private volatile boolean threaded;
+    private int phase;
 
-        if (init) initDisplay();
-    }
+    // Lock instead of the monitor so virtual threads are not pinned
+    private final ReentrantLock lock = new ReentrantLock();
 
-    /**
-     * Set singleton GD for Mobile Agent
-     * @param gd Sets graphic display
-     */
-    private void singletonGD(GraphDisplay gd) {
-        if (this.gd == null) this.gd = gd;
-    }
 
     /**
      * Sets assigned node
@@ -44,7 +35,19 @@ public class MobileAgent implements Runnable {
      * @param init true if walk is required
      */
     MobileAgent(GraphNode node, boolean init) {
-        initDisplay();
+        this(node, init, true);
+    }
+
+    /**
+     * Sets assigned node, walks if needed and only schedules the agent when
+     * asked to. The event simulation drives its agents itself.
+     *
+     * @param node GraphNode attached to
+     * @param init true if walk is required
+     * @param threaded true if the agent runs on the agent executor of the
+     *                 context
+     */
+    MobileAgent(GraphNode node, boolean init, boolean threaded) {
 
         // Sets the node and walks
         this.node = node;
@@ -52,168 +55,201 @@ public class MobileAgent implements Runnable {
             walkToFire(node);
         }
 
-        // Sets thread data
+        reset(this.node, threaded);
         this.node.setMobileAgent(this);
-        thread = new Thread(this);
-        thread.start();
+        begin();
     }
 
     /**
-     * Random walk to a yellow node
-     * Will find it or bust
+     * Creates an agent for the pool, it gets a node in reset
+     */
+    private MobileAgent() {
+    }
+
+    /**
+     * Places a clone on a node, reusing a pooled agent if there is one
      *
-     * @param node Current GraphNode of the crawl
-     * @return Graphnode of yellow node
+     * @param node GraphNode to place the clone on
+     * @param threaded true if the agent runs on the agent executor
+     * @return The clone, null if the node already has an agent
      */
-    private GraphNode walkToFire(GraphNode node) {
-        // If current node is on fire then isolate and propagate
-        if (node.getStatus() == NodeStatus.YELLOW) {
-            // navigate
-            this.node = node;
-            return node;
+    static MobileAgent spawn(GraphNode node, boolean threaded) {
+        AgentPool pool = node.getContext().getAgentPool();
+        MobileAgent agent = pool == null ? null : pool.acquire();
+        if (agent == null) agent = new MobileAgent();
+
+        // The agent is set up before it is attached, a status change may
+        // wake it right after
+        agent.reset(node, threaded);
+
+        // Someone else was quicker, keep the agent for next time
+        if (!node.attachAgent(agent)) {
+            if (pool != null) pool.release(agent);
+            return null;
         }
-        // Else randomly walk to an adjacent node
-        else {
-            int random = (int)(Math.random() * node.getAdjacentNodes().size());
-            GraphNode randNode = node.getAdjacentNodes().get(random);
-
-            // Walk to the node if it is not on fire
-            if (randNode.getStatus() != NodeStatus.RED) {
-                return walkToFire(node.getAdjacentNodes().get(random));
-            } else return walkToFire(node);
+
+        agent.begin();
+        return agent;
+    }
+
+    /**
+     * Moves the agent to the start of a new life
+     *
+     * @param node GraphNode the agent is attached to
+     * @param threaded true if the agent runs on the agent executor
+     */
+    private void reset(GraphNode node, boolean threaded) {
+        lock.lock();
+        try {
+            this.node = node;
+            this.threaded = threaded;
+            this.phase = NEW;
+        } finally {
+            lock.unlock();
         }
     }
 
     /**
-     * Updates the display of
-     * @param coordinate Coordinate of the Node
+     * Lets the observer know where the agent is and takes the first step
+     */
+    private void begin() {
+        node.getContext().trace(TraceFile.AGENT, node.getId(), 0, 0);
+        node.getContext().getObserver().agentCreated(this);
+        wake();
+    }
+
+    /**
+     * Walks to a yellow node with the walk strategy of the context. If there
+     * is no way to the fire the agent stays where it is.
+     *
+     * @param node GraphNode the walk starts on
+     */
+    private void walkToFire(GraphNode node) {
+        GraphNode target = node.getContext().getWalkStrategy().walk(node);
+        if (target != null) this.node = target;
+    }
+
+    /**
+     * Gets the node the agent is attached to
+     *
+     * @return GraphNode of the agent
      */
-    private void updateDisplay(Coordinate coordinate) {
-        if (display != null) {
-            display.setCenterX(coordinate.getX() * GraphDisplay.scale);
-            display.setCenterY(coordinate.getY() * GraphDisplay.scale);
-            Platform.runLater(() -> {
-                switch (node.getStatus()) {
-                    case GREEN:
-                        display.setStroke(Color.DARKBLUE);
-                        break;
-                    case YELLOW:
-                        display.setStroke(Color.DARKORANGE);
-                        break;
-                    case RED:
-                        display.setStroke(Color.CRIMSON);
-                        break;
-                }
-            });
+    public GraphNode getNode() {
+        return node;
+    }
+
+    /**
+     * Creates the status report of the agent's node
+     *
+     * @return Packet to be sent to the base station
+     */
+    Packet createReport() {
+        return Packet.report(node, node.getContext().nextPacketId());
+    }
+
+    /**
+     * Puts a status report into the mailbox of the agent's node. A report
+     * refused by a full mailbox has nowhere else to go and is dropped, the
+     * agent never waits for room.
+     */
+    private void report() {
+        Packet report = createReport();
+        if (!node.addPacket(report, false)) {
+            node.getContext().getObserver().messageDropped(report);
         }
     }
 
+    /**
+     * Tells the observer that the agent needs to be redrawn
+     */
+    void updateDisplay() {
+        node.getContext().getObserver().agentUpdated(this);
+    }
+
     /**
      * Clone the mobile agents to other nodes
      */
     private void propagate() {
         // Loop through nodes and add mobile agents
         for (GraphNode n : this.node.getAdjacentNodes()) {
-            synchronized (n) {
-                if (n.getStatus()!=NodeStatus.RED && n.getMobileAgent()==null){
-                    new MobileAgent(n, false);
-                }
+            if (n.getStatus() != NodeStatus.RED && n.getMobileAgent() == null) {
+                spawn(n, true);
             }
         }
     }
 
     /**
-     * Run and match actions specified in the PDF
+     * Takes the agent off its dead node and gives it to the pool, if the
+     * context has one
      */
-    @Override
-    public void run() {
+    void retire() {
+        GraphNode dead = node;
+        dead.detachAgent(this);
 
-        // Run functions emulating the behavior of the node
-        onBlueNode();
-        onYellowNode();
-
-        updateDisplay(node.getCoordinate());
-        // Send final node
-        node.addPacket(new Packet(
-                "MA: " + node + " | Status: " + node.getStatus(),
-                false, node, (int)(Math.random()*20000)));
-
-        synchronized (node) { node.notify(); }
-        // Dies here with the GraphNode
+        AgentPool pool = dead.getContext().getAgentPool();
+        if (pool != null) pool.release(this);
     }
 
     /**
-     * Emulate the behavior of a blue node
+     * Schedules the agent after the status of its node changed
      */
-    private void onBlueNode() {
+    public void wake() {
+        if (threaded) node.getContext().executeAgent(this);
+    }
 
-        // Update the display
-        updateDisplay(node.getCoordinate());
+    /**
+     * Run and match actions specified in the PDF, as far as the status of
+     * the node allows. Runs again on every status change, steps already
+     * taken are not repeated.
+     */
+    @Override
+    public void run() {
+        boolean died = false;
 
-        // Send package if the node is green
-        if (node.getStatus() == NodeStatus.GREEN) {
-            node.addPacket(new Packet(
-                    "MA: " + node + " | Status: " + node.getStatus(),
-                    false, node, (int)(Math.random()*20000)));
-        }
+        lock.lock();
+        try {
+            // A wake from an earlier life can still be queued after the agent
+            // died and was reused, or while a reused agent failed to attach.
+            // Only the agent attached to the node acts for it.
+            if (node.getMobileAgent() != this) return;
 
-        // Wait until it is time to change
-        while (node.getStatus() == NodeStatus.GREEN) {
-            try {
-                synchronized (this) {  wait(); }
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
+            NodeStatus status = node.getStatus();
 
-        // Update the display
-        updateDisplay(node.getCoordinate());
-    }
+            // Emulate the behavior of a blue node
+            if (phase == NEW) {
+                updateDisplay();
 
-    /**
-     * Emulates the behavior of a Yellow node
-     */
-    private void onYellowNode() {
-        // Propagate/clone the yellow nodes
-        propagate();
-
-        // While there is an adjacent fire
-        node.addPacket(new Packet(
-                "MA: " + node + " | Status: " + node.getStatus(),
-                false, node, (int)(Math.random()*20000)));
-
-        // Wait until the node status turns RED
-        while (node.getStatus() == NodeStatus.YELLOW) {
-            try {
-                synchronized (this) {  wait(); }
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+                // Send package if the node is green
+                if (status == NodeStatus.GREEN) report();
+                phase = ON_BLUE;
             }
-        }
-    }
 
+            // Emulates the behavior of a Yellow node
+            if (phase == ON_BLUE && status != NodeStatus.GREEN) {
+                updateDisplay();
 
-    /**
-     * Initializes the display of a Mobile agent
-     */
-    private void initDisplay() {
-        if (gd != null) {
-            // Set GUI components
-            Circle c = new Circle(20);
-            c.setStroke(Color.AZURE);
-            c.setFill(Color.TRANSPARENT);
-            c.setStrokeWidth(3);
-
-            // Set the center to be the same as the node's
-            if (node != null) {
-                c.setCenterX(node.getCoordinate().getX());
-                c.setCenterY(node.getCoordinate().getY());
-                updateDisplay(node.getCoordinate());
+                // Propagate/clone the yellow nodes
+                propagate();
+
+                // While there is an adjacent fire
+                report();
+                phase = ON_YELLOW;
             }
 
-            // Update the display and apply it to the GUI
-            this.display = c;
-            Platform.runLater(() -> gd.addToCenter(display));
+            // Send final node
+            if (phase == ON_YELLOW && status == NodeStatus.RED) {
+                updateDisplay();
+                report();
+                node.wake();
+                phase = DEAD;
+                died = true;
+            }
+        } finally {
+            lock.unlock();
         }
+
+        // Dies here with the GraphNode
+        if (died) retire();
     }
+
 }
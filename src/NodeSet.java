@@ -0,0 +1,106 @@
+import java.util.Arrays;
+
+/**
+ * Set of node IDs, stored as a sparse bitset.
+ *
+ * Only the 64 bit words that have a bit set are kept, in a small open
+ * addressing hash table keyed by word index. A packet's path touches a few
+ * nodes out of possibly millions, so this stays a few dozen bytes where a
+ * plain bitset would need a bit for every node of the graph, while lookups
+ * are still O(1).
+ */
+public class NodeSet {
+
+    // Marks a free slot in the table
+    private static final int FREE = -1;
+
+    // Private variables
+    private int[] keys;
+    private long[] words;
+    private int used = 0;
+
+
+    /**
+     * Creates an empty set
+     */
+    NodeSet() {
+        keys = new int[8];
+        words = new long[8];
+        Arrays.fill(keys, FREE);
+    }
+
+    /**
+     * Checks if the ID is in the set
+     *
+     * @param id Node ID
+     * @return true if contained
+     */
+    public boolean contains(int id) {
+        int slot = find(id >>> 6);
+        return keys[slot] != FREE && (words[slot] & (1L << id)) != 0;
+    }
+
+    /**
+     * Adds the ID to the set
+     *
+     * @param id Node ID
+     */
+    public void add(int id) {
+        int slot = find(id >>> 6);
+        if (keys[slot] == FREE) {
+            keys[slot] = id >>> 6;
+            used++;
+        }
+        words[slot] |= 1L << id;
+
+        // Keep the table at most half full
+        if (used * 2 > keys.length) grow();
+    }
+
+    /**
+     * Removes the ID from the set. The word stays allocated, which is fine
+     * as removals only happen while backtracking.
+     *
+     * @param id Node ID
+     */
+    public void remove(int id) {
+        int slot = find(id >>> 6);
+        if (keys[slot] != FREE) words[slot] &= ~(1L << id);
+    }
+
+    /**
+     * Finds the slot of a word, or the free slot where it would go
+     *
+     * @param key Word index
+     * @return Slot in the table
+     */
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int hash = key * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the table and puts every word back in
+     */
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldWords = words;
+
+        keys = new int[oldKeys.length * 2];
+        words = new long[oldWords.length * 2];
+        Arrays.fill(keys, FREE);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                words[slot] = oldWords[i];
+            }
+        }
+    }
+}
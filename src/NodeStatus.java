@@ -1,6 +1,19 @@
 /**
  * Indicators of GraphNode health
+ *
+ * A node only moves forward: GREEN to YELLOW to RED, or GREEN straight to
+ * RED for the nodes that are on fire at the start.
  */
 enum NodeStatus {
-    RED, YELLOW, GREEN
+    RED, YELLOW, GREEN;
+
+    /**
+     * Checks if a node with this status may change to another one
+     *
+     * @param next Status to change to
+     * @return true for GREEN to YELLOW or RED and for YELLOW to RED
+     */
+    boolean canChangeTo(NodeStatus next) {
+        return next.ordinal() < ordinal();
+    }
 }
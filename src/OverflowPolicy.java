@@ -0,0 +1,19 @@
+/**
+ * What a bounded Mailbox does with a packet that comes in while it is full
+ */
+public enum OverflowPolicy {
+
+    // Make room by dropping the oldest waiting message
+    DROP_OLDEST,
+
+    // Drop a waiting report of the same node and status, otherwise the new
+    // one. Batches are never duplicates.
+    DROP_DUPLICATE_STATUS,
+
+    // Make the sender wait for room, for at most Mailbox.BLOCK_MILLIS. Only
+    // node threads wait, agents run on a shared pool and drop their report.
+    BLOCK,
+
+    // Refuse the packet, the sending node passes it to another neighbor
+    REROUTE
+}
@@ -1,43 +1,144 @@
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Packet class for messaging
+ *
+ * The path the packet took is kept in an array stack, with a NodeSet of the
+ * node IDs on it so that checking a neighbor is O(1) instead of a scan.
+ *
+ * A packet can also be a batch that carries several reports together, see
+ * batch.
  */
 public class Packet {
 
     private String message;
     private boolean success;
     private boolean msg;
-    private LinkedBlockingDeque<GraphNode> bq = new LinkedBlockingDeque<>();
-    private LinkedBlockingDeque<GraphNode> tried = new LinkedBlockingDeque<>();
+    private GraphNode[] bq = new GraphNode[8];
+    private int bqSize = 0;
+    private NodeSet onPath = new NodeSet();
+    private NodeSet tried;
     private int ID;
+    private List<Packet> reports;
+    private int reportedNode = -1;
+    private NodeStatus reportedStatus;
 
     Packet (String message, boolean update, GraphNode gn, int ID) {
         success = false;
         msg = true;
         this.message = message;
 //        this.update = update;
-        bq.add(gn);
+        addToBQ(gn);
         this.ID = ID;
     }
 
     /**
-     * Check for node in the tried Queue
+     * Creates the status report of an agent
+     *
+     * @param node Node of the agent, the report is about it
+     * @param ID Unique ID of the report
+     * @return Report packet
+     */
+    static Packet report(GraphNode node, int ID) {
+        NodeStatus status = node.getStatus();
+        Packet report = new Packet("MA: " + node + " | Status: " + status, false, node, ID);
+        report.reportedNode = node.getId();
+        report.reportedStatus = status;
+        return report;
+    }
+
+    /**
+     * Creates one packet that carries several reports the rest of the way.
+     * Batches in the list are unpacked, so a batch never holds a batch.
+     *
+     * @param packets Reports, or batches of them, going the same way
+     * @param gn Node the batch is made at
+     * @param ID Unique ID of the batch
+     * @return Batch packet
+     */
+    static Packet batch(List<Packet> packets, GraphNode gn, int ID) {
+        List<Packet> reports = new ArrayList<>();
+        for (Packet p : packets) reports.addAll(p.getReports());
+
+        Packet batch = new Packet("Batch of " + reports.size() + " reports", false, gn, ID);
+        batch.reports = reports;
+        return batch;
+    }
+
+    /**
+     * Gets the reports the packet carries
+     *
+     * @return The reports of a batch, or the packet itself
+     */
+    public List<Packet> getReports() {
+        return reports == null ? Collections.singletonList(this) : reports;
+    }
+
+    /**
+     * Gets the node a report is about
+     *
+     * @return Node ID, -1 if the packet is not a status report
+     */
+    public int getReportedNode() {
+        return reportedNode;
+    }
+
+    /**
+     * Gets the status a report tells
+     *
+     * @return NodeStatus, null if the packet is not a status report
+     */
+    public NodeStatus getReportedStatus() {
+        return reportedStatus;
+    }
+
+    /**
+     * Gets the amount of reports the packet carries
+     *
+     * @return 1, or the size of a batch
+     */
+    public int getReportCount() {
+        return reports == null ? 1 : reports.size();
+    }
+
+    /**
+     * Checks if a node was tried and refused the packet
      *
      * @param node Node to test
-     * @return boolean, true if tested
+     * @return boolean, true if tried
      */
     public boolean containsTried(GraphNode node) {
-        return tried.contains(node);
+        return tried != null && tried.contains(node.getId());
     }
 
     /**
-     * Adds to the blocking queue
+     * Marks a node that refused the packet, so it is not picked again. The
+     * set is only created once it is needed.
+     *
+     * @param node Node that has been tried
+     */
+    public void addTried(GraphNode node) {
+        if (tried == null) tried = new NodeSet();
+        tried.add(node.getId());
+    }
+
+    /**
+     * Pushes a node onto the path stack, the array doubles when it is full
      *
      * @param node Node to add
      */
     public void addToBQ(GraphNode node) {
-        bq.add(node);
+        // Double the stack when it is full
+        if (bqSize == bq.length) {
+            GraphNode[] bigger = new GraphNode[bq.length * 2];
+            System.arraycopy(bq, 0, bigger, 0, bqSize);
+            bq = bigger;
+        }
+
+        bq[bqSize++] = node;
+        onPath.add(node.getId());
     }
 
     /**
@@ -49,6 +150,15 @@ public class Packet {
         return message + " | Unique Packet ID: " + ID;
     }
 
+    /**
+     * Gets the report text alone, without the packet ID
+     *
+     * @return String of the report
+     */
+    public String getReport() {
+        return message;
+    }
+
     /**
      * Gets the status of the packet
      *
@@ -59,17 +169,16 @@ public class Packet {
     }
 
     /**
-     * Gets the sender of the packet by peeking into the BQ
+     * Gets the sender of the packet, the bottom of the path stack
      *
      * @return GraphNode of sender
      */
     public GraphNode getSender() {
-        return bq.peek();
+        return bqSize == 0 ? null : bq[0];
     }
 
     /**
-     * Gets the Id of the packet
-     * Currently random, but can be changed to something more useful later on
+     * Gets the Id of the packet, unique within its simulation
      *
      * @return Integer value of the ID
      */
@@ -91,7 +200,16 @@ public class Packet {
      * @return Last node
      */
     public GraphNode getLast() {
-        return bq.removeLast();
+        GraphNode last = bq[--bqSize];
+        bq[bqSize] = null;
+
+        // The sender is on the path twice, so only forget a node once no
+        // copy of it is left. Only happens while backtracking.
+        boolean again = false;
+        for (int i = 0; i < bqSize && !again; i++) again = bq[i] == last;
+        if (!again) onPath.remove(last.getId());
+
+        return last;
     }
 
     /**
@@ -105,13 +223,13 @@ public class Packet {
     }
 
     /**
-     * Check if the GraphNode specified is held within BQ
+     * Check if the GraphNode specified is on the path stack
      *
      * @param graphNode Graphnode to check
-     * @return true if contained in bq
+     * @return true if it is on the path
      */
     public boolean contains(GraphNode graphNode) {
-        return bq.contains(graphNode);
+        return onPath.contains(graphNode.getId());
     }
 
     /**
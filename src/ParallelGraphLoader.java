@@ -0,0 +1,384 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Loads a text graph on a fork/join pool.
+ *
+ * The file is cut into chunks at line ends and every chunk is parsed on its
+ * own by a GraphParser, which numbers the nodes it sees locally. The chunks
+ * are then merged in file order, so a node gets the same ID as with
+ * GraphParser.parse: the order it first shows up in the file. The edges are
+ * put into compressed rows with two passes, a count of every row and a
+ * fill, where each chunk writes its edges into slots reserved for it, so the
+ * rows also come out in file order.
+ *
+ * Small files end up as a single chunk.
+ */
+public class ParallelGraphLoader {
+
+    // Files are cut into chunks of at least this many bytes
+    private static final long MIN_CHUNK = 1 << 20;
+
+    // And at most this many, so a chunk can be mapped
+    private static final long MAX_CHUNK = 1 << 30;
+
+    // Private variables
+    private final ForkJoinPool pool;
+
+
+    /**
+     * Creates a loader running on the given pool
+     *
+     * @param pool Pool to parse the chunks on
+     */
+    ParallelGraphLoader(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Reads a graph file on the common pool
+     *
+     * @param file File to read
+     * @return Topology of the graph
+     * @throws IOException If the file can not be read or is malformed
+     */
+    public static Topology load(File file) throws IOException {
+        return new ParallelGraphLoader(ForkJoinPool.commonPool()).read(file);
+    }
+
+    /**
+     * Reads a graph file
+     *
+     * @param file File to read
+     * @return Topology of the graph
+     * @throws IOException If the file can not be read or is malformed
+     */
+    public Topology read(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             FileChannel channel = in.getChannel()) {
+
+            // Cut the file and parse every chunk
+            Chunk[] chunks = split(channel);
+            forEach(chunks.length, i -> chunks[i].parse(channel));
+
+            // Report the first mistake in the file, with its line in the file
+            int lines = 0;
+            for (Chunk chunk : chunks) {
+                if (chunk.failure != null) throw chunk.failure;
+                if (chunk.error != null) throw chunk.error.shift(lines);
+                chunk.firstLine = lines;
+                lines += chunk.parser.getLineCount();
+            }
+
+            return merge(chunks, lines);
+        }
+    }
+
+    /**
+     * Cuts the file into chunks that start at the beginning of a line
+     *
+     * @param channel Channel of the file
+     * @return Chunks in file order
+     * @throws IOException If the file can not be read
+     */
+    private Chunk[] split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long count = Math.min(pool.getParallelism() * 4L, size / MIN_CHUNK);
+        count = Math.max(count, (size + MAX_CHUNK - 1) / MAX_CHUNK);
+        count = Math.max(count, 1);
+
+        long[] bounds = new long[(int) count + 1];
+        bounds[(int) count] = size;
+        for (int i = 1; i < count; i++) {
+            long target = Math.max(bounds[i - 1], size / count * i);
+            bounds[i] = nextLine(channel, target, size);
+        }
+
+        Chunk[] chunks = new Chunk[(int) count];
+        for (int i = 0; i < count; i++) {
+            chunks[i] = new Chunk(bounds[i], bounds[i + 1]);
+        }
+        return chunks;
+    }
+
+    /**
+     * Finds the start of the first line at or after a position
+     *
+     * @param channel Channel of the file
+     * @param position Position to start looking at
+     * @param size Size of the file
+     * @return Position after the next line end, or the size of the file
+     * @throws IOException If the file can not be read
+     */
+    private static long nextLine(FileChannel channel, long position, long size)
+            throws IOException {
+        if (position == 0) return 0;
+
+        // The line end may be right before the position
+        position--;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') return position + i + 1;
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Gives the chunks global node IDs and builds the topology
+     *
+     * @param chunks Parsed chunks in file order
+     * @param lines Amount of lines in the file
+     * @return Topology of the graph
+     * @throws IOException If the station or a fire is not a node
+     */
+    private Topology merge(Chunk[] chunks, int lines) throws IOException {
+        // Number the nodes in the order they first show up
+        int expected = 0;
+        for (Chunk chunk : chunks) expected += chunk.builder.getNodeCount();
+        CoordinateMap ids = new CoordinateMap(expected);
+        int[] xs = new int[Math.max(expected, 1)];
+        int[] ys = new int[Math.max(expected, 1)];
+        int nodeCount = 0;
+
+        long targetCount = 0;
+        for (Chunk chunk : chunks) {
+            Topology.Builder builder = chunk.builder;
+            chunk.global = new int[builder.getNodeCount()];
+            for (int i = 0; i < chunk.global.length; i++) {
+                long key = Coordinate.pack(builder.getX(i), builder.getY(i));
+                int id = ids.get(key);
+                if (id == CoordinateMap.MISSING) {
+                    id = nodeCount++;
+                    xs[id] = builder.getX(i);
+                    ys[id] = builder.getY(i);
+                    ids.put(key, id);
+                }
+                chunk.global[i] = id;
+            }
+            targetCount += builder.getEdgeCount() * 2L;
+        }
+        if (targetCount > Integer.MAX_VALUE) {
+            throw new IOException("the graph has too many edges");
+        }
+
+        // First pass, the chunks counted their rows while parsing
+        int[] offsets = new int[nodeCount + 1];
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.global.length; i++) {
+                offsets[chunk.global[i] + 1] += chunk.degrees[i];
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) offsets[i + 1] += offsets[i];
+
+        // Reserve every chunk its slots in the rows, the counts become cursors
+        int[] fill = Arrays.copyOf(offsets, nodeCount);
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.global.length; i++) {
+                int id = chunk.global[i];
+                int degree = chunk.degrees[i];
+                chunk.degrees[i] = fill[id];
+                fill[id] += degree;
+            }
+        }
+
+        // Second pass, every chunk fills its own slots
+        int[] targets = new int[(int) targetCount];
+        forEach(chunks.length, i -> chunks[i].fill(targets));
+
+        // The station is the last one in the file, the fires are kept in order
+        int station = -1;
+        int[] fires = new int[4];
+        int fireCount = 0;
+        for (Chunk chunk : chunks) {
+            int[] line = chunk.parser.getStationLine();
+            if (line != null) station = resolve(ids, line, 0, chunk, "station");
+
+            int[] fireLines = chunk.parser.getFireLines();
+            for (int i = 0; i < fireLines.length; i += 3) {
+                if (fireCount == fires.length) {
+                    fires = Arrays.copyOf(fires, fireCount * 2);
+                }
+                fires[fireCount++] = resolve(ids, fireLines, i, chunk, "fire");
+            }
+        }
+        if (station < 0) {
+            throw new GraphFormatException(lines, "the graph has no station");
+        }
+
+        return new Topology(IntBuffer.wrap(Arrays.copyOf(xs, nodeCount)),
+                            IntBuffer.wrap(Arrays.copyOf(ys, nodeCount)),
+                            IntBuffer.wrap(offsets), IntBuffer.wrap(targets),
+                            station, Arrays.copyOf(fires, fireCount));
+    }
+
+    /**
+     * Finds the node a station or fire line refers to
+     *
+     * @param ids Global node IDs
+     * @param refs Saved references, x, y and line number one after another
+     * @param at Index of the x of the reference
+     * @param chunk Chunk the reference was read in
+     * @param type Type of line, for the message
+     * @return Node ID
+     * @throws GraphFormatException If there is no such node
+     */
+    private static int resolve(CoordinateMap ids, int[] refs, int at, Chunk chunk,
+                               String type) throws GraphFormatException {
+        int id = ids.get(Coordinate.pack(refs[at], refs[at + 1]));
+        if (id == CoordinateMap.MISSING) {
+            throw new GraphFormatException(chunk.firstLine + refs[at + 2], type
+                    + " " + refs[at] + " " + refs[at + 1]
+                    + " is not a node of the graph");
+        }
+        return id;
+    }
+
+    /**
+     * Runs an action for every index on the pool and waits for all of them
+     *
+     * @param count Amount of indices
+     * @param action Action to run for an index
+     */
+    private void forEach(int count, IntConsumer action) {
+        pool.invoke(new Split(0, count, action));
+    }
+
+    /**
+     * Splits a range of indices in halves until single indices are left
+     */
+    private static class Split extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+
+        Split(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                action.accept(from);
+            } else if (to > from) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Split(from, middle, action),
+                          new Split(middle, to, action));
+            }
+        }
+    }
+
+    /**
+     * Part of the file with its own parser and local node IDs
+     */
+    private static class Chunk {
+
+        private final long start;
+        private final long end;
+        private Topology.Builder builder = new Topology.Builder();
+        private GraphParser parser;
+        private int firstLine;
+
+        // Mistakes found while parsing, thrown in file order later
+        private GraphFormatException error;
+        private IOException failure;
+
+        // Global ID of every local node
+        private int[] global;
+
+        // Row length of every local node, later the next slot to fill
+        private int[] degrees;
+
+
+        Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Parses the chunk and counts its rows
+         *
+         * @param channel Channel of the file
+         */
+        void parse(FileChannel channel) {
+            try {
+                ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY,
+                                               start, end - start);
+                parser = new GraphParser(new BufferInput(bytes));
+                parser.read(builder);
+            } catch (GraphFormatException e) {
+                error = e;
+                return;
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+
+            degrees = new int[builder.getNodeCount()];
+            for (int e = 0; e < builder.getEdgeCount(); e++) {
+                degrees[builder.getEdgeEnd(e, 0)]++;
+                degrees[builder.getEdgeEnd(e, 1)]++;
+            }
+        }
+
+        /**
+         * Writes the edges of the chunk into its reserved slots
+         *
+         * @param targets Targets of the whole topology
+         */
+        void fill(int[] targets) {
+            for (int e = 0; e < builder.getEdgeCount(); e++) {
+                int a = builder.getEdgeEnd(e, 0);
+                int b = builder.getEdgeEnd(e, 1);
+                targets[degrees[a]++] = global[b];
+                targets[degrees[b]++] = global[a];
+            }
+        }
+    }
+
+    /**
+     * Stream over a mapped part of the file
+     */
+    private static class BufferInput extends InputStream {
+
+        private final ByteBuffer bytes;
+
+
+        BufferInput(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() {
+            return bytes.hasRemaining() ? bytes.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!bytes.hasRemaining()) return -1;
+            int count = Math.min(len, bytes.remaining());
+            bytes.get(b, off, count);
+            return count;
+        }
+    }
+}
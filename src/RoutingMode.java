@@ -0,0 +1,11 @@
+/**
+ * How packets find their way to the base station
+ */
+public enum RoutingMode {
+
+    // Decentralised depth first search with receipts, the original routing
+    SEARCH,
+
+    // Every node knows its next hop on a shortest path, see RoutingTable
+    TABLE
+}
@@ -0,0 +1,203 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Next hop towards the base station for every node of a graph.
+ *
+ * The table starts out as a breadth first search from the station over all
+ * nodes that are not on fire. When a node burns, only the nodes whose route
+ * went through it are repaired: they are cut loose and reconnected from
+ * their neighbors that still have a route, shortest distance first. Packets
+ * then travel the shortest path without any searching or receipts.
+ *
+ * Reads are lock free, repairs are done one at a time. The table listens to
+ * the status changes of its context to see nodes burn.
+ */
+public class RoutingTable implements StatusListener {
+
+    // Hop count of nodes without a route
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * Builds the table of the graph with a breadth first search over the
+     * compressed rows of its topology
+     *
+     * @param graph Graph whose packets are routed
+     */
+    RoutingTable(Graph graph) {
+        Topology topology = graph.getTopology();
+        int count = topology.getNodeCount();
+
+        // Everyone starts without a route
+        int[] hops = new int[count];
+        int[] next = new int[count];
+        Arrays.fill(hops, UNREACHABLE);
+        Arrays.fill(next, -1);
+
+        // Breadth first search outwards from the station, the queue is a
+        // plain array as every node goes in at most once
+        int station = topology.getStation();
+        if (station >= 0 && graph.getNode(station).getStatus() != NodeStatus.RED) {
+            int[] queue = new int[count];
+            int head = 0, tail = 0;
+            hops[station] = 0;
+            queue[tail++] = station;
+
+            while (head < tail) {
+                int node = queue[head++];
+                for (int j = topology.getStart(node); j < topology.getEnd(node); j++) {
+                    int n = topology.getTarget(j);
+                    if (hops[n] == UNREACHABLE
+                            && graph.getNode(n).getStatus() != NodeStatus.RED) {
+                        hops[n] = hops[node] + 1;
+                        next[n] = node;
+                        queue[tail++] = n;
+                    }
+                }
+            }
+        }
+
+        // Hand the routes to the nodes
+        for (int i = 0; i < count; i++) {
+            graph.getNode(i).setRoute(next[i] < 0 ? null : graph.getNode(next[i]), hops[i]);
+        }
+    }
+
+    /**
+     * Gets the next hop of a node, repairing the table first if the current
+     * one has burnt down
+     *
+     * @param node Node holding a packet
+     * @return Next GraphNode towards the station, null if there is no route
+     */
+    public GraphNode getNextHop(GraphNode node) {
+        GraphNode next = node.getNextHop();
+        if (next != null && next.getStatus() != NodeStatus.RED) return next;
+
+        // Someone is burning on the way, wait for the repair to be done. The
+        // status changes before the repair takes the lock, so the hop read
+        // here can still be burning and is checked again.
+        synchronized (this) {
+            next = node.getNextHop();
+        }
+        if (next != null && next.getStatus() != NodeStatus.RED) return next;
+
+        // A burning node has no route of its own, but its last words can
+        // still leave through the closest neighbor that has one
+        next = null;
+        int best = UNREACHABLE;
+        for (GraphNode n : node.getAdjacentNodes()) {
+            if (n.getHops() < best && n.getStatus() != NodeStatus.RED) {
+                best = n.getHops();
+                next = n;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Repairs the routes when a node turns RED
+     *
+     * @param node GraphNode that changed
+     * @param from Status before the change
+     * @param to Status after the change
+     */
+    @Override
+    public void statusChanged(GraphNode node, NodeStatus from, NodeStatus to) {
+        if (to == NodeStatus.RED) nodeBurned(node);
+    }
+
+    /**
+     * Removes a burning node and repairs the routes that went through it
+     *
+     * @param burnt Node that turned RED
+     */
+    public synchronized void nodeBurned(GraphNode burnt) {
+        if (burnt.getHops() == UNREACHABLE) return;
+
+        // Find every node whose route goes through the burnt one
+        Set<GraphNode> cut = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayList<GraphNode> order = new ArrayList<>();
+        cut.add(burnt);
+        order.add(burnt);
+        for (int i = 0; i < order.size(); i++) {
+            for (GraphNode n : order.get(i).getAdjacentNodes()) {
+                if (n.getNextHop() == order.get(i) && cut.add(n)) order.add(n);
+            }
+        }
+
+        // Reconnect them from the neighbors that still have a route
+        IdentityHashMap<GraphNode, Route> best = new IdentityHashMap<>();
+        PriorityQueue<Route> queue = new PriorityQueue<>();
+        for (GraphNode node : order) {
+            if (node == burnt || node.getStatus() == NodeStatus.RED) continue;
+
+            for (GraphNode n : node.getAdjacentNodes()) {
+                if (!cut.contains(n) && n.getHops() != UNREACHABLE
+                        && n.getStatus() != NodeStatus.RED) {
+                    offer(best, queue, new Route(node, n, n.getHops() + 1));
+                }
+            }
+        }
+
+        // Spread the shortest routes through the cut nodes
+        while (!queue.isEmpty()) {
+            Route route = queue.poll();
+            if (best.get(route.node) != route) continue;
+
+            for (GraphNode n : route.node.getAdjacentNodes()) {
+                if (cut.contains(n) && n != burnt && n.getStatus() != NodeStatus.RED) {
+                    offer(best, queue, new Route(n, route.node, route.hops + 1));
+                }
+            }
+        }
+
+        // Publish, nodes that were not reached have lost their route
+        for (GraphNode node : order) {
+            Route route = best.get(node);
+            if (route == null) node.setRoute(null, UNREACHABLE);
+            else node.setRoute(route.next, route.hops);
+        }
+    }
+
+    /**
+     * Keeps a route if it is shorter than the best one found so far
+     *
+     * @param best Best route found per node
+     * @param queue Routes still to be spread
+     * @param route Candidate route
+     */
+    private static void offer(IdentityHashMap<GraphNode, Route> best,
+                              PriorityQueue<Route> queue, Route route) {
+        Route current = best.get(route.node);
+        if (current == null || route.hops < current.hops) {
+            best.put(route.node, route);
+            queue.add(route);
+        }
+    }
+
+    /**
+     * Candidate route of a node during a repair
+     */
+    private static class Route implements Comparable<Route> {
+
+        private final GraphNode node;
+        private final GraphNode next;
+        private final int hops;
+
+        Route(GraphNode node, GraphNode next, int hops) {
+            this.node = node;
+            this.next = next;
+            this.hops = hops;
+        }
+
+        @Override
+        public int compareTo(Route o) {
+            return Integer.compare(hops, o.hops);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Clock that every delay of the simulation goes through.
+ *
+ * The GUI runs in real time, while the headless runs can speed the clock up
+ * so a fire that takes minutes is over in seconds. Times are simulation
+ * milliseconds since the clock started.
+ *
+ * There is no virtual clock for the threaded runs: time could only jump
+ * ahead safely once every node thread is asleep, which nothing here can
+ * tell. EventSimulation is the run with virtual time.
+ */
+public interface SimulationClock extends TimeSource {
+
+    /**
+     * Lets the given amount of simulation time pass for the calling thread
+     *
+     * @param millis Simulation milliseconds to wait
+     * @throws InterruptedException If interrupted while waiting
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Clock running at wall clock speed, as used by the GUI
+     *
+     * @return Real time clock
+     */
+    static SimulationClock realTime() {
+        return scaled(1);
+    }
+
+    /**
+     * Clock running the given amount of times faster than the wall clock
+     *
+     * @param factor Speed up, 1000 turns a second into a millisecond
+     * @return Scaled clock
+     */
+    static SimulationClock scaled(double factor) {
+        if (!(factor > 0) || Double.isInfinite(factor)) {
+            throw new IllegalArgumentException("Clock factor must be positive and finite");
+        }
+        return new ScaledClock(factor);
+    }
+
+    /**
+     * Wall clock time multiplied by a constant factor
+     */
+    class ScaledClock implements SimulationClock {
+
+        private final double factor;
+        private final long start = System.nanoTime();
+
+        ScaledClock(double factor) {
+            this.factor = factor;
+        }
+
+        @Override
+        public long now() {
+            return (long) ((System.nanoTime() - start) * factor / 1_000_000);
+        }
+
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            long nanos = (long) (millis * 1_000_000 / factor);
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        }
+    }
+}
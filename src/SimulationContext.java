@@ -0,0 +1,312 @@
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Settings and services shared by every GraphNode and MobileAgent of one
+ * simulation run.
+ *
+ * Each Graph owns exactly one context, so several simulations can run side
+ * by side in the same JVM without stepping on each other.
+ */
+public class SimulationContext {
+
+    // Private variables
+    private volatile SimulationObserver observer = SimulationObserver.NONE;
+    private volatile Executor executor = ExecutionMode.PLATFORM.createExecutor();
+    private volatile SimulationClock clock = SimulationClock.realTime();
+    private volatile TimeSource timeSource;
+    private volatile RoutingTable routingTable;
+    private volatile Executor agentExecutor = ForkJoinPool.commonPool();
+    private volatile AgentPool agentPool;
+    private volatile WalkStrategy walkStrategy = WalkStrategy.random(WalkStrategy.DEFAULT_STEPS);
+    private final List<StatusListener> statusListeners = new CopyOnWriteArrayList<>();
+    private volatile Random random = new Random();
+    private volatile TraceRecorder traceRecorder;
+    private final AtomicInteger packetIds = new AtomicInteger();
+    private final NodeSet deliveredReports = new NodeSet();
+
+
+    /**
+     * Gets the observer that is told about state changes
+     *
+     * @return SimulationObserver, never null
+     */
+    public SimulationObserver getObserver() {
+        return observer;
+    }
+
+    /**
+     * Sets the observer that is told about state changes
+     *
+     * @param observer Observer, null to ignore all changes
+     */
+    public void setObserver(SimulationObserver observer) {
+        this.observer = observer == null ? SimulationObserver.NONE : observer;
+    }
+
+    /**
+     * Gets the clock every simulation delay goes through
+     *
+     * @return SimulationClock of the run
+     */
+    public SimulationClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Sets the clock, real time by default
+     *
+     * @param clock Real time or scaled clock
+     */
+    public void setClock(SimulationClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Sets where the time of events comes from when it is not the clock, for
+     * a simulation that keeps its own time
+     *
+     * @param timeSource Time of the events, null for the clock
+     */
+    public void setTimeSource(TimeSource timeSource) {
+        this.timeSource = timeSource;
+    }
+
+    /**
+     * Gets the simulation time events are stamped with
+     *
+     * @return Milliseconds of the time source, or of the clock without one
+     */
+    public long now() {
+        TimeSource source = timeSource;
+        return source != null ? source.now() : clock.now();
+    }
+
+    /**
+     * Sets how node and agent tasks are run
+     *
+     * @param mode Platform or virtual threads
+     */
+    public void setExecutionMode(ExecutionMode mode) {
+        this.executor = mode.createExecutor();
+    }
+
+    /**
+     * Sets a custom executor for the node tasks. Every task blocks until its
+     * node has burnt down, so it has to run each task on a thread of its
+     * own, a fixed size pool will stall the simulation.
+     *
+     * @param executor Executor starting the tasks
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Starts the task of a node
+     *
+     * @param task GraphNode
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Sets the executor running the agents. Agents never wait for anything
+     * but a full mailbox, so a small shared pool is enough, the common
+     * ForkJoinPool by default.
+     *
+     * @param agentExecutor Executor running the agent steps
+     */
+    public void setAgentExecutor(Executor agentExecutor) {
+        this.agentExecutor = agentExecutor;
+    }
+
+    /**
+     * Runs an agent after the status of its node changed
+     *
+     * @param agent MobileAgent to run
+     */
+    void executeAgent(MobileAgent agent) {
+        agentExecutor.execute(agent);
+    }
+
+    /**
+     * Gets the pool dead agents are kept in
+     *
+     * @return AgentPool, null if every clone is a new agent
+     */
+    public AgentPool getAgentPool() {
+        return agentPool;
+    }
+
+    /**
+     * Sets the pool dead agents are kept in. Leave it unset while an
+     * observer keeps anything per agent, like the shapes of the GUI, since a
+     * reused agent is the same object on another node.
+     *
+     * @param agentPool Pool, null to create every clone new
+     */
+    public void setAgentPool(AgentPool agentPool) {
+        this.agentPool = agentPool;
+    }
+
+    /**
+     * Gets the routing table used by the nodes
+     *
+     * @return RoutingTable, null when packets search their own way
+     */
+    public RoutingTable getRoutingTable() {
+        return routingTable;
+    }
+
+    /**
+     * Sets the routing table used by the nodes
+     *
+     * @param routingTable Table, null to search with receipts instead
+     */
+    public void setRoutingTable(RoutingTable routingTable) {
+        if (this.routingTable != null) removeStatusListener(this.routingTable);
+        if (routingTable != null) addStatusListener(routingTable);
+        this.routingTable = routingTable;
+    }
+
+    /**
+     * Adds a listener that is told about every status change
+     *
+     * @param listener Listener to add
+     */
+    public void addStatusListener(StatusListener listener) {
+        statusListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added before
+     *
+     * @param listener Listener to remove
+     */
+    public void removeStatusListener(StatusListener listener) {
+        statusListeners.remove(listener);
+    }
+
+    /**
+     * Tells the listeners and then the observer about a status change
+     *
+     * @param node GraphNode that changed
+     * @param from Status before the change
+     * @param to Status after the change
+     */
+    void fireStatusChanged(GraphNode node, NodeStatus from, NodeStatus to) {
+        for (StatusListener listener : statusListeners) {
+            listener.statusChanged(node, from, to);
+        }
+        observer.statusChanged(node, to);
+    }
+
+    /**
+     * Gets how the first agent walks to the fire
+     *
+     * @return WalkStrategy of the run
+     */
+    public WalkStrategy getWalkStrategy() {
+        return walkStrategy;
+    }
+
+    /**
+     * Sets how the first agent walks to the fire, a bounded random walk by
+     * default
+     *
+     * @param walkStrategy Strategy to use
+     */
+    public void setWalkStrategy(WalkStrategy walkStrategy) {
+        this.walkStrategy = walkStrategy;
+    }
+
+    /**
+     * Gets the random numbers every random choice of the simulation comes
+     * from, such as the steps of a random walk and the burn delays
+     *
+     * @return Random of the run, unseeded unless setSeed was called
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * Seeds the random numbers. Together with the EventSimulation, which
+     * runs every step on one thread in a fixed order, the same graph and
+     * seed always give the same run. Threaded runs still depend on how the
+     * threads are scheduled.
+     *
+     * @param seed Seed of the random numbers
+     */
+    public void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Gets the ID for a new packet, counting up from 1
+     *
+     * @return ID unique within this simulation
+     */
+    public int nextPacketId() {
+        return packetIds.incrementAndGet();
+    }
+
+    /**
+     * Remembers a report that reached the base station. Reports are the same
+     * if they tell the same status of the same node, whichever agent or
+     * packet brought them, so the station knows at most one per node and
+     * status.
+     *
+     * @param report Delivered report
+     * @return false if the same node and status was delivered before
+     */
+    boolean markDelivered(Packet report) {
+        if (report.getReportedStatus() == null) return true;
+
+        // A bit per node and status: RED, YELLOW and GREEN
+        int key = report.getReportedNode() * 3 + report.getReportedStatus().ordinal();
+        synchronized (deliveredReports) {
+            if (deliveredReports.contains(key)) return false;
+            deliveredReports.add(key);
+            return true;
+        }
+    }
+
+    /**
+     * Gets the recorder the events of the run are traced to
+     *
+     * @return TraceRecorder, null if nothing is recorded
+     */
+    public TraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+
+    /**
+     * Sets the recorder the events of the run are traced to. The caller
+     * closes it once the run is over.
+     *
+     * @param traceRecorder Recorder, null to stop recording
+     */
+    public void setTraceRecorder(TraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * Records an event if a trace is being recorded, at the time of now. See TraceFile for the kinds and their values.
+     *
+     * @param kind Kind of record
+     * @param a First value
+     * @param b Second value
+     * @param c Third value
+     */
+    void trace(int kind, int a, int b, int c) {
+        TraceRecorder recorder = traceRecorder;
+        if (recorder != null) recorder.record(now(), kind, a, b, c);
+    }
+}
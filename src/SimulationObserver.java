@@ -0,0 +1,66 @@
+/**
+ * Receives the state changes of a running simulation.
+ *
+ * The simulation never touches the GUI directly, instead it reports to an
+ * observer. The GUI is one observer, the headless statistics are another.
+ * Callbacks arrive on the simulation threads, so implementations must be
+ * thread safe and should return quickly.
+ */
+public interface SimulationObserver {
+
+    // Observer that ignores everything, used until one is attached
+    SimulationObserver NONE = new SimulationObserver() { };
+
+    /**
+     * Called after a GraphNode has changed its status
+     *
+     * @param node GraphNode that changed
+     * @param status New status of the node
+     */
+    default void statusChanged(GraphNode node, NodeStatus status) { }
+
+    /**
+     * Called once a MobileAgent has been placed on its node
+     *
+     * @param agent Newly created agent
+     */
+    default void agentCreated(MobileAgent agent) { }
+
+    /**
+     * Called when the state of an agent (or the node under it) has changed
+     *
+     * @param agent Agent to be redrawn/recounted
+     */
+    default void agentUpdated(MobileAgent agent) { }
+
+    /**
+     * Called when a packet reaches the base station
+     *
+     * @param packet Delivered packet
+     */
+    default void messageDelivered(Packet packet) { }
+
+    /**
+     * Called when a report reaches the base station with a node and status
+     * that was delivered before, it is not passed to messageDelivered
+     *
+     * @param packet Duplicate report
+     */
+    default void messageDuplicate(Packet packet) { }
+
+    /**
+     * Called when a packet gives up on reaching the base station
+     *
+     * @param packet Dropped packet, possibly a batch of reports
+     */
+    default void messageDropped(Packet packet) { }
+
+    /**
+     * Called when a packet is handed from one node to the next
+     *
+     * @param packet Packet on its way
+     * @param from Node passing it on
+     * @param to Node receiving it
+     */
+    default void messageForwarded(Packet packet, GraphNode from, GraphNode to) { }
+}
@@ -0,0 +1,128 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Observer that counts what happens during a simulation, used by the
+ * headless runner instead of the GUI
+ */
+public class SimulationStats implements SimulationObserver {
+
+    // Counters, updated from many simulation threads at once
+    private AtomicInteger yellow = new AtomicInteger();
+    private AtomicInteger red = new AtomicInteger();
+    private AtomicInteger agents = new AtomicInteger();
+    private AtomicInteger delivered = new AtomicInteger();
+    private AtomicInteger dropped = new AtomicInteger();
+    private AtomicInteger duplicates = new AtomicInteger();
+    private AtomicInteger hops = new AtomicInteger();
+    private AtomicInteger changes = new AtomicInteger();
+
+
+    @Override
+    public void statusChanged(GraphNode node, NodeStatus status) {
+        if (status == NodeStatus.YELLOW) yellow.incrementAndGet();
+        else if (status == NodeStatus.RED) red.incrementAndGet();
+        changes.incrementAndGet();
+    }
+
+    @Override
+    public void agentCreated(MobileAgent agent) {
+        agents.incrementAndGet();
+        changes.incrementAndGet();
+    }
+
+    @Override
+    public void messageDelivered(Packet packet) {
+        delivered.incrementAndGet();
+        changes.incrementAndGet();
+    }
+
+    @Override
+    public void messageDuplicate(Packet packet) {
+        duplicates.incrementAndGet();
+        changes.incrementAndGet();
+    }
+
+    @Override
+    public void messageDropped(Packet packet) {
+        dropped.addAndGet(packet.getReportCount());
+        changes.incrementAndGet();
+    }
+
+    @Override
+    public void messageForwarded(Packet packet, GraphNode from, GraphNode to) {
+        hops.incrementAndGet();
+    }
+
+    /**
+     * Gets the amount of nodes that were put in danger
+     *
+     * @return Count of YELLOW transitions
+     */
+    public int getYellowCount() {
+        return yellow.get();
+    }
+
+    /**
+     * Gets the amount of nodes that caught fire
+     *
+     * @return Count of RED transitions
+     */
+    public int getRedCount() {
+        return red.get();
+    }
+
+    /**
+     * Gets the amount of agents that were created
+     *
+     * @return Count of agents
+     */
+    public int getAgentCount() {
+        return agents.get();
+    }
+
+    /**
+     * Gets the amount of packets that made it to the base station
+     *
+     * @return Count of delivered packets
+     */
+    public int getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /**
+     * Gets the amount of packets that gave up on the way
+     *
+     * @return Count of dropped packets
+     */
+    public int getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Gets the amount of reports the base station had already received
+     *
+     * @return Count of suppressed duplicates
+     */
+    public int getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    /**
+     * Gets the amount of times a packet went from one node to the next
+     *
+     * @return Count of hops of all packets
+     */
+    public int getHopCount() {
+        return hops.get();
+    }
+
+    /**
+     * Gets the total amount of observed events, used to tell if the
+     * simulation has gone quiet
+     *
+     * @return Count of all events
+     */
+    public int getChangeCount() {
+        return changes.get();
+    }
+}
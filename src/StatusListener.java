@@ -0,0 +1,15 @@
+/**
+ * Told about every status change of the nodes of a simulation, see
+ * SimulationContext.addStatusListener
+ */
+public interface StatusListener {
+
+    /**
+     * Called once for every change, on the thread that made it
+     *
+     * @param node GraphNode that changed
+     * @param from Status before the change
+     * @param to Status after the change
+     */
+    void statusChanged(GraphNode node, NodeStatus from, NodeStatus to);
+}
@@ -0,0 +1,15 @@
+/**
+ * Read only simulation time, for the code that only stamps events with it.
+ *
+ * Every SimulationClock is one. The event simulation is one without being a
+ * clock, since its events never sleep.
+ */
+public interface TimeSource {
+
+    /**
+     * Gets the current simulation time
+     *
+     * @return Milliseconds since the start of the simulation
+     */
+    long now();
+}
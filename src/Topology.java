@@ -0,0 +1,332 @@
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Compact, read only layout of a graph.
+ *
+ * Nodes are numbered 0 to getNodeCount() - 1 and everything is kept in
+ * primitive arrays: the coordinates side by side in two int arrays and the
+ * edges in compressed sparse row form, where the neighbors of node i are
+ * getTarget(j) for j from getStart(i) up to getEnd(i). Every edge is stored
+ * in both directions.
+ *
+ * The arrays are IntBuffers, either plain heap arrays or views of a memory
+ * mapped BinaryGraphFile, so a large graph can be used without copying it.
+ *
+ * This is what the loaders produce; Graph turns it into GraphNodes.
+ */
+public class Topology {
+
+    // Private variables
+    private final IntBuffer xs;
+    private final IntBuffer ys;
+    private final IntBuffer offsets;
+    private final IntBuffer targets;
+    private final int station;
+    private final int[] fires;
+    private volatile CoordinateMap ids;
+
+
+    /**
+     * Creates a topology from finished arrays
+     *
+     * @param xs X coordinates by node ID
+     * @param ys Y coordinates by node ID
+     * @param offsets Start of every node's row in targets, one extra at the end
+     * @param targets Neighbor IDs, row after row
+     * @param station ID of the base station, -1 if there is none
+     * @param fires IDs of the nodes on fire at the start
+     */
+    Topology(IntBuffer xs, IntBuffer ys, IntBuffer offsets, IntBuffer targets,
+             int station, int[] fires) {
+        this.xs = xs;
+        this.ys = ys;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.station = station;
+        this.fires = fires;
+    }
+
+    /**
+     * Gets the amount of nodes
+     *
+     * @return Count of nodes
+     */
+    public int getNodeCount() {
+        return xs.limit();
+    }
+
+    /**
+     * Gets the amount of edges, counting each one once
+     *
+     * @return Count of edges
+     */
+    public int getEdgeCount() {
+        return targets.limit() / 2;
+    }
+
+    /**
+     * Gets the X coordinate of a node
+     *
+     * @param node Node ID
+     * @return x-Coordinate
+     */
+    public int getX(int node) {
+        return xs.get(node);
+    }
+
+    /**
+     * Gets the Y coordinate of a node
+     *
+     * @param node Node ID
+     * @return y-Coordinate
+     */
+    public int getY(int node) {
+        return ys.get(node);
+    }
+
+    /**
+     * Finds the node at a location. The lookup map is only built the first
+     * time this is called.
+     *
+     * @param x x-Coordinate
+     * @param y y-Coordinate
+     * @return Node ID, -1 if there is no node there
+     */
+    public int find(int x, int y) {
+        CoordinateMap map = ids;
+        if (map == null) {
+            synchronized (this) {
+                if (ids == null) {
+                    CoordinateMap built = new CoordinateMap(getNodeCount());
+                    for (int i = getNodeCount() - 1; i >= 0; i--) {
+                        built.put(Coordinate.pack(getX(i), getY(i)), i);
+                    }
+                    ids = built;
+                }
+                map = ids;
+            }
+        }
+        return map.get(Coordinate.pack(x, y));
+    }
+
+    /**
+     * Gets the first index of the node's row in the targets
+     *
+     * @param node Node ID
+     * @return Index of the first neighbor
+     */
+    public int getStart(int node) {
+        return offsets.get(node);
+    }
+
+    /**
+     * Gets the index after the last one of the node's row in the targets
+     *
+     * @param node Node ID
+     * @return Index after the last neighbor
+     */
+    public int getEnd(int node) {
+        return offsets.get(node + 1);
+    }
+
+    /**
+     * Gets the amount of neighbors of a node
+     *
+     * @param node Node ID
+     * @return Degree of the node
+     */
+    public int getDegree(int node) {
+        return offsets.get(node + 1) - offsets.get(node);
+    }
+
+    /**
+     * Gets a neighbor out of the targets
+     *
+     * @param index Index between getStart and getEnd of a node
+     * @return Node ID of the neighbor
+     */
+    public int getTarget(int index) {
+        return targets.get(index);
+    }
+
+    /**
+     * Gets the base station
+     *
+     * @return Node ID of the station, -1 if there is none
+     */
+    public int getStation() {
+        return station;
+    }
+
+    /**
+     * Gets the nodes that are on fire at the start
+     *
+     * @return Node IDs on fire
+     */
+    public int[] getFires() {
+        return fires;
+    }
+
+    /**
+     * Collects nodes and edges in any order and builds the topology, with a
+     * count then fill pass over the edges for the compressed rows
+     */
+    static class Builder {
+
+        private CoordinateMap ids = new CoordinateMap(16);
+        private int[] xs = new int[16];
+        private int[] ys = new int[16];
+        private int nodeCount = 0;
+        private int[] edges = new int[32];
+        private int edgeCount = 0;
+        private int station = -1;
+        private int[] fires = new int[4];
+        private int fireCount = 0;
+
+
+        /**
+         * Adds a node, or finds it if it was added before
+         *
+         * @param x x-Coordinate
+         * @param y y-Coordinate
+         * @return Node ID
+         */
+        public int addNode(int x, int y) {
+            int id = find(x, y);
+            if (id >= 0) return id;
+
+            if (nodeCount == xs.length) {
+                xs = Arrays.copyOf(xs, nodeCount * 2);
+                ys = Arrays.copyOf(ys, nodeCount * 2);
+            }
+            xs[nodeCount] = x;
+            ys[nodeCount] = y;
+            ids.put(Coordinate.pack(x, y), nodeCount);
+            return nodeCount++;
+        }
+
+        /**
+         * Finds a node that has been added
+         *
+         * @param x x-Coordinate
+         * @param y y-Coordinate
+         * @return Node ID, -1 if there is no such node
+         */
+        public int find(int x, int y) {
+            return ids.get(Coordinate.pack(x, y));
+        }
+
+        /**
+         * Adds an edge between two nodes
+         *
+         * @param a Node ID of one end
+         * @param b Node ID of the other end
+         */
+        public void addEdge(int a, int b) {
+            if (edgeCount * 2 == edges.length) {
+                edges = Arrays.copyOf(edges, edges.length * 2);
+            }
+            edges[edgeCount * 2] = a;
+            edges[edgeCount * 2 + 1] = b;
+            edgeCount++;
+        }
+
+        /**
+         * Gets the amount of nodes added
+         *
+         * @return Count of nodes
+         */
+        int getNodeCount() {
+            return nodeCount;
+        }
+
+        /**
+         * Gets the X coordinate of an added node
+         *
+         * @param node Node ID
+         * @return x-Coordinate
+         */
+        int getX(int node) {
+            return xs[node];
+        }
+
+        /**
+         * Gets the Y coordinate of an added node
+         *
+         * @param node Node ID
+         * @return y-Coordinate
+         */
+        int getY(int node) {
+            return ys[node];
+        }
+
+        /**
+         * Gets the amount of edges added
+         *
+         * @return Count of edges
+         */
+        int getEdgeCount() {
+            return edgeCount;
+        }
+
+        /**
+         * Gets one end of an added edge
+         *
+         * @param edge Index of the edge, in the order they were added
+         * @param end 0 for the first end, 1 for the second
+         * @return Node ID of that end
+         */
+        int getEdgeEnd(int edge, int end) {
+            return edges[edge * 2 + end];
+        }
+
+        /**
+         * Sets the base station
+         *
+         * @param node Node ID of the station
+         */
+        public void setStation(int node) {
+            station = node;
+        }
+
+        /**
+         * Sets a node on fire at the start
+         *
+         * @param node Node ID on fire
+         */
+        public void addFire(int node) {
+            if (fireCount == fires.length) {
+                fires = Arrays.copyOf(fires, fireCount * 2);
+            }
+            fires[fireCount++] = node;
+        }
+
+        /**
+         * Builds the compressed rows and the finished topology
+         *
+         * @return Topology of everything added
+         */
+        public Topology build() {
+            // Count the degree of every node, then turn it into offsets
+            int[] offsets = new int[nodeCount + 1];
+            for (int i = 0; i < edgeCount * 2; i++) offsets[edges[i] + 1]++;
+            for (int i = 0; i < nodeCount; i++) offsets[i + 1] += offsets[i];
+
+            // Fill every row in the order the edges were added
+            int[] fill = Arrays.copyOf(offsets, nodeCount);
+            int[] targets = new int[edgeCount * 2];
+            for (int e = 0; e < edgeCount; e++) {
+                int a = edges[e * 2];
+                int b = edges[e * 2 + 1];
+                targets[fill[a]++] = b;
+                targets[fill[b]++] = a;
+            }
+
+            return new Topology(IntBuffer.wrap(Arrays.copyOf(xs, nodeCount)),
+                                IntBuffer.wrap(Arrays.copyOf(ys, nodeCount)),
+                                IntBuffer.wrap(offsets), IntBuffer.wrap(targets),
+                                station, Arrays.copyOf(fires, fireCount));
+        }
+    }
+}
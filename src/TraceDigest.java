@@ -0,0 +1,128 @@
+/**
+ * Observer that folds every event of a run into one 64 bit number, and
+ * passes the events on to another observer.
+ *
+ * Each event adds its kind, the time of the clock and the IDs of the nodes
+ * and packets involved, in the order the events happen. Two runs with the
+ * same digest saw the same events at the same times, so comparing digests is
+ * a cheap check that a seeded run was reproduced.
+ */
+public class TraceDigest implements SimulationObserver {
+
+    // FNV-1a, one 64 bit word at a time
+    private static final long OFFSET = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    // Kinds of events
+    private static final int STATUS = 1;
+    private static final int AGENT_CREATED = 2;
+    private static final int AGENT_UPDATED = 3;
+    private static final int DELIVERED = 4;
+    private static final int DUPLICATE = 5;
+    private static final int DROPPED = 6;
+    private static final int FORWARDED = 7;
+
+    // Private variables
+    private final SimulationContext context;
+    private final SimulationObserver next;
+    private long digest = OFFSET;
+    private long events = 0;
+
+
+    /**
+     * Creates a digest of the runs of a context
+     *
+     * @param context Context whose time stamps the events
+     * @param next Observer the events are passed on to
+     */
+    TraceDigest(SimulationContext context, SimulationObserver next) {
+        this.context = context;
+        this.next = next == null ? SimulationObserver.NONE : next;
+    }
+
+    @Override
+    public void statusChanged(GraphNode node, NodeStatus status) {
+        add(STATUS, node.getId(), status.ordinal(), 0);
+        next.statusChanged(node, status);
+    }
+
+    @Override
+    public void agentCreated(MobileAgent agent) {
+        add(AGENT_CREATED, agent.getNode().getId(), 0, 0);
+        next.agentCreated(agent);
+    }
+
+    @Override
+    public void agentUpdated(MobileAgent agent) {
+        add(AGENT_UPDATED, agent.getNode().getId(), 0, 0);
+        next.agentUpdated(agent);
+    }
+
+    @Override
+    public void messageDelivered(Packet packet) {
+        add(DELIVERED, packet.getID(), 0, 0);
+        next.messageDelivered(packet);
+    }
+
+    @Override
+    public void messageDuplicate(Packet packet) {
+        add(DUPLICATE, packet.getID(), 0, 0);
+        next.messageDuplicate(packet);
+    }
+
+    @Override
+    public void messageDropped(Packet packet) {
+        add(DROPPED, packet.getID(), 0, 0);
+        next.messageDropped(packet);
+    }
+
+    @Override
+    public void messageForwarded(Packet packet, GraphNode from, GraphNode to) {
+        add(FORWARDED, packet.getID(), from.getId(), to.getId());
+        next.messageForwarded(packet, from, to);
+    }
+
+    /**
+     * Gets the digest of every event so far
+     *
+     * @return Digest, the same for the same events in the same order
+     */
+    public synchronized long getDigest() {
+        return digest;
+    }
+
+    /**
+     * Gets the amount of events seen
+     *
+     * @return Event count
+     */
+    public synchronized long getEventCount() {
+        return events;
+    }
+
+    /**
+     * Folds one event into the digest
+     *
+     * @param kind Kind of event
+     * @param a First ID
+     * @param b Second ID or value
+     * @param c Third ID
+     */
+    private synchronized void add(int kind, long a, long b, long c) {
+        mix(kind);
+        mix(context.now());
+        mix(a);
+        mix(b);
+        mix(c);
+        events++;
+    }
+
+    /**
+     * Folds one word into the digest
+     *
+     * @param word Value to add
+     */
+    private void mix(long word) {
+        digest = (digest ^ word) * PRIME;
+    }
+}
@@ -0,0 +1,245 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary trace of a run, written by the TraceRecorder. The file is little
+ * endian, a header and then records of RECORD_SIZE bytes:
+ *
+ * header: magic, version, header size, record size, node count, record
+ *         count (long), start time in epoch milliseconds (long), length of
+ *         the graph path, graph path in UTF-8
+ * record: nanoseconds since the start (long), simulation time in
+ *         milliseconds (long), kind, a, b, c (ints)
+ *
+ * What a, b and c are depends on the kind, see the constants. Each thread
+ * writes its records in order, records of different threads can be
+ * interleaved, so the reader should not rely on the order of the file
+ * across threads.
+ *
+ * Run it as a program to print a summary of a trace:
+ * java TraceFile run.trace
+ */
+public class TraceFile {
+
+    // "TRCE" in ASCII, the first four bytes of every trace
+    public static final int MAGIC = 0x45435254;
+    public static final int VERSION = 1;
+
+    // Size of a record in bytes
+    public static final int RECORD_SIZE = 32;
+
+    // Kinds of records
+    // a = node, b = status before, c = status after (NodeStatus ordinals)
+    public static final int STATUS = 1;
+    // a = node the agent starts on
+    public static final int AGENT = 2;
+    // a = packet ID, b = node whose mailbox it reached, c = PACKET_ flag
+    public static final int PACKET = 3;
+    // a = packet ID, b = node sending it back, c = node it goes back to or -1
+    public static final int RECEIPT = 4;
+    // a = report ID, b = base station, c = ID of the packet that carried it
+    public static final int DELIVERED = 5;
+
+    // Flags of PACKET records
+    public static final int PACKET_ACCEPTED = 0;
+    public static final int PACKET_DROPPED = 1;
+    public static final int PACKET_REFUSED = 2;
+
+    // Header fields before the graph path
+    static final int FIXED_HEADER_SIZE = 4 * 4 + 4 + 8 + 8 + 4;
+
+    // Records are mapped in segments of 2^SEGMENT_SHIFT records, a mapping
+    // can not be larger than 2 GB
+    private static final int SEGMENT_SHIFT = 24;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    // Private variables
+    private final ByteBuffer[] segments;
+    private final int nodeCount;
+    private final long recordCount;
+    private final long startMillis;
+    private final String graphPath;
+
+
+    /**
+     * Opens a trace
+     *
+     * @param file Trace file
+     * @throws IOException If the file can not be read or is not a trace
+     */
+    public TraceFile(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             FileChannel channel = in.getChannel()) {
+
+            long length = channel.size();
+            if (length < FIXED_HEADER_SIZE) throw new IOException(file + " is too short for a trace");
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, FIXED_HEADER_SIZE)
+                                       .order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) throw new IOException(file + " is not a trace");
+            int version = header.getInt();
+            if (version != VERSION) throw new IOException(file + " has unknown version " + version);
+            int headerSize = header.getInt();
+            int recordSize = header.getInt();
+            if (recordSize != RECORD_SIZE) throw new IOException(file + " has bad records");
+            nodeCount = header.getInt();
+            recordCount = header.getLong();
+            startMillis = header.getLong();
+            int pathLength = header.getInt();
+
+            if (headerSize < FIXED_HEADER_SIZE + pathLength
+                    || headerSize + recordCount * RECORD_SIZE > length) {
+                throw new IOException(file + " is cut short");
+            }
+
+            byte[] path = new byte[pathLength];
+            channel.map(FileChannel.MapMode.READ_ONLY, FIXED_HEADER_SIZE, pathLength).get(path);
+            graphPath = new String(path, StandardCharsets.UTF_8);
+
+            if (recordCount > Integer.MAX_VALUE) throw new IOException(file + " has too many records");
+            segments = new ByteBuffer[(int) ((recordCount + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long first = (long) i << SEGMENT_SHIFT;
+                long count = Math.min(recordCount - first, 1L << SEGMENT_SHIFT);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                        headerSize + first * RECORD_SIZE, count * RECORD_SIZE);
+                segments[i] = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of nodes of the traced graph
+     *
+     * @return Node count
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Gets the amount of records
+     *
+     * @return Record count
+     */
+    public int getRecordCount() {
+        return (int) recordCount;
+    }
+
+    /**
+     * Gets when the recording started
+     *
+     * @return Epoch milliseconds
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Gets the path of the graph file that was run
+     *
+     * @return Path, empty if it is not known
+     */
+    public String getGraphPath() {
+        return graphPath;
+    }
+
+    /**
+     * Gets the nanoseconds between the start and a record
+     *
+     * @param record Index of the record
+     * @return Nanoseconds
+     */
+    public long getNanos(int record) {
+        return segments[record >>> SEGMENT_SHIFT].getLong((record & SEGMENT_MASK) * RECORD_SIZE);
+    }
+
+    /**
+     * Gets the simulation time of a record
+     *
+     * @param record Index of the record
+     * @return Milliseconds of the clock of the run
+     */
+    public long getTime(int record) {
+        return segments[record >>> SEGMENT_SHIFT].getLong((record & SEGMENT_MASK) * RECORD_SIZE + 8);
+    }
+
+    /**
+     * Gets the kind of a record
+     *
+     * @param record Index of the record
+     * @return One of the kind constants
+     */
+    public int getKind(int record) {
+        return segments[record >>> SEGMENT_SHIFT].getInt((record & SEGMENT_MASK) * RECORD_SIZE + 16);
+    }
+
+    /**
+     * Gets the first value of a record
+     *
+     * @param record Index of the record
+     * @return Value, see the kind constants
+     */
+    public int getA(int record) {
+        return segments[record >>> SEGMENT_SHIFT].getInt((record & SEGMENT_MASK) * RECORD_SIZE + 20);
+    }
+
+    /**
+     * Gets the second value of a record
+     *
+     * @param record Index of the record
+     * @return Value, see the kind constants
+     */
+    public int getB(int record) {
+        return segments[record >>> SEGMENT_SHIFT].getInt((record & SEGMENT_MASK) * RECORD_SIZE + 24);
+    }
+
+    /**
+     * Gets the third value of a record
+     *
+     * @param record Index of the record
+     * @return Value, see the kind constants
+     */
+    public int getC(int record) {
+        return segments[record >>> SEGMENT_SHIFT].getInt((record & SEGMENT_MASK) * RECORD_SIZE + 28);
+    }
+
+    /**
+     * Prints how many records of each kind a trace has
+     *
+     * @param args Trace files
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: java TraceFile <trace>...");
+            System.exit(2);
+        }
+
+        String[] names = {"", "status", "agent", "packet", "receipt", "delivered"};
+        for (String arg : args) {
+            TraceFile trace = new TraceFile(new File(arg));
+            long[] counts = new long[names.length];
+            long last = 0;
+            for (int i = 0; i < trace.getRecordCount(); i++) {
+                int kind = trace.getKind(i);
+                if (kind > 0 && kind < counts.length) counts[kind]++;
+                last = Math.max(last, trace.getTime(i));
+            }
+
+            StringBuilder line = new StringBuilder(arg)
+                    .append(" | graph: ").append(trace.getGraphPath())
+                    .append(" | nodes: ").append(trace.getNodeCount())
+                    .append(" | records: ").append(trace.getRecordCount());
+            for (int kind = 1; kind < names.length; kind++) {
+                line.append(" | ").append(names[kind]).append(": ").append(counts[kind]);
+            }
+            line.append(" | simulated time: ").append(last).append(" ms");
+            System.out.println(line);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Records the events of a run into a TraceFile.
+ *
+ * A record is put into a preallocated buffer without creating any objects.
+ * Each thread writes into the buffer of its stripe, picked by its thread ID,
+ * so threads rarely share a buffer and the event simulation, with its
+ * single thread, always writes into the same one. A full buffer is copied
+ * into the file at once: the space is reserved by adding to one counter and
+ * the file is memory mapped a chunk at a time, so no write system call is
+ * made while the simulation runs.
+ *
+ * Stripes instead of one buffer per thread, since the threaded simulation
+ * has a thread per node and a buffer for each would not fit in memory on
+ * large graphs.
+ */
+public class TraceRecorder implements Closeable {
+
+    // Records per buffer and bytes mapped at a time
+    public static final int BUFFER_RECORDS = 1024;
+    public static final int CHUNK_SIZE = 1 << 24;
+
+    // Position of the record count in the header
+    private static final int RECORD_COUNT_OFFSET = 20;
+
+    // Private variables
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int headerSize;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong end = new AtomicLong();
+    private final ArrayList<MappedByteBuffer> chunks = new ArrayList<>();
+    private final Stripe[] stripes;
+    private volatile boolean closed = false;
+    private final AtomicBoolean closing = new AtomicBoolean();
+
+
+    /**
+     * Creates a trace, an existing file is replaced
+     *
+     * @param traceFile File to write to
+     * @param nodeCount Amount of nodes of the graph
+     * @param graphPath Path of the graph file, so the trace can be replayed
+     * @throws IOException If the file can not be written
+     */
+    public TraceRecorder(File traceFile, int nodeCount, String graphPath) throws IOException {
+        file = new RandomAccessFile(traceFile, "rw");
+        channel = file.getChannel();
+        channel.truncate(0);
+
+        // The header is padded to whole records
+        byte[] path = graphPath.getBytes(StandardCharsets.UTF_8);
+        int size = TraceFile.FIXED_HEADER_SIZE + path.length;
+        headerSize = (size + TraceFile.RECORD_SIZE - 1) / TraceFile.RECORD_SIZE * TraceFile.RECORD_SIZE;
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(TraceFile.MAGIC).putInt(TraceFile.VERSION).putInt(headerSize)
+              .putInt(TraceFile.RECORD_SIZE).putInt(nodeCount).putLong(0)
+              .putLong(System.currentTimeMillis()).putInt(path.length).put(path);
+        header.clear();
+        chunk(0).duplicate().put(header);
+
+        // A power of two of stripes, a few per processor
+        int count = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+        stripes = new Stripe[Math.max(1, count)];
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new Stripe();
+    }
+
+    /**
+     * Records an event, see the kinds of TraceFile
+     *
+     * @param time Simulation time in milliseconds
+     * @param kind Kind of record
+     * @param a First value
+     * @param b Second value
+     * @param c Third value
+     */
+    public void record(long time, int kind, int a, int b, int c) {
+        if (closed) return;
+        long nanos = System.nanoTime() - startNanos;
+
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        stripe.lock.lock();
+        try {
+            if (closed) return;
+            ByteBuffer buffer = stripe.buffer;
+            buffer.putLong(nanos).putLong(time).putInt(kind).putInt(a).putInt(b).putInt(c);
+            if (!buffer.hasRemaining()) flush(buffer);
+        } catch (IOException e) {
+            // A trace that can not be written must not stop the simulation
+            closed = true;
+            e.printStackTrace();
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the amount of records written to the file so far
+     *
+     * @return Record count, all of them once the recorder is closed
+     */
+    public long getRecordCount() {
+        return end.get() / TraceFile.RECORD_SIZE;
+    }
+
+    /**
+     * Writes out every buffer, fills in the record count and closes the
+     * file. Records made after this are ignored.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closing.compareAndSet(false, true)) return;
+        closed = true;
+
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                flush(stripe.buffer);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+
+        synchronized (this) {
+            chunk(0).putLong(RECORD_COUNT_OFFSET, getRecordCount());
+            for (MappedByteBuffer chunk : chunks) chunk.force();
+        }
+
+        // The last chunk is mapped past the records, cut the file back.
+        // Some systems do not allow it while mapped, the count is enough.
+        try {
+            channel.truncate(headerSize + end.get());
+        } catch (IOException e) {
+            // Readers only read as many records as the header says
+        }
+        channel.close();
+        file.close();
+    }
+
+    /**
+     * Copies a buffer into the file and empties it
+     *
+     * @param buffer Buffer of a stripe, filled up to its position
+     */
+    private void flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        long position = headerSize + end.getAndAdd(buffer.remaining());
+
+        // The reserved space may start in one chunk and end in the next
+        while (buffer.hasRemaining()) {
+            int within = (int) (position % CHUNK_SIZE);
+            int count = Math.min(buffer.remaining(), CHUNK_SIZE - within);
+
+            ByteBuffer target = chunk((int) (position / CHUNK_SIZE)).duplicate();
+            target.position(within);
+            ByteBuffer part = buffer.duplicate();
+            part.limit(part.position() + count);
+            target.put(part);
+
+            buffer.position(buffer.position() + count);
+            position += count;
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Gets a mapped chunk of the file, mapping it and the ones before it if
+     * needed
+     *
+     * @param index Index of the chunk
+     * @return Chunk, little endian
+     */
+    private synchronized MappedByteBuffer chunk(int index) throws IOException {
+        while (chunks.size() <= index) {
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE,
+                    (long) chunks.size() * CHUNK_SIZE, CHUNK_SIZE);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            chunks.add(chunk);
+        }
+        return chunks.get(index);
+    }
+
+    /**
+     * Buffer shared by the threads whose ID falls on it
+     */
+    private static class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_RECORDS * TraceFile.RECORD_SIZE)
+                                                    .order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,275 @@
+import java.util.Arrays;
+
+/**
+ * Plays back a TraceFile without running the simulation again.
+ *
+ * Only the records that change what is shown are kept: status changes,
+ * agents and delivered reports, ordered by simulation time. The state of
+ * every node, its status and if an agent came to it, is saved as a snapshot
+ * every so many of those records. Seeking to any time, forward or back,
+ * starts from the snapshot before it and applies at most one interval of
+ * records, so it takes about as long anywhere in a long trace. Small steps
+ * forward, as when playing, only apply the records in between.
+ *
+ * Agents are shown from the moment they start on a node until the end, like
+ * the live display keeps the ring of an agent that died with its node.
+ *
+ * Not thread safe, the GUI only uses it on the JavaFX thread.
+ */
+public class TraceReplay {
+
+    // Fewest records between two snapshots
+    public static final int MIN_SNAPSHOT_INTERVAL = 1024;
+
+    // State of a node: the NodeStatus ordinal and a bit for an agent
+    private static final byte STATUS_MASK = 3;
+    private static final byte AGENT_BIT = 4;
+    private static final NodeStatus[] STATUSES = NodeStatus.values();
+
+    /**
+     * Told about what changed on a seek
+     */
+    interface Listener {
+
+        /**
+         * The status or agent of a node may have changed
+         *
+         * @param node Node ID
+         */
+        void nodeChanged(int node);
+
+        /**
+         * A report reached the base station, only told when moving forward
+         * one step at a time
+         *
+         * @param report Report ID
+         * @param station Base station
+         * @param carrier ID of the packet that carried it
+         */
+        void reportDelivered(int report, int station, int carrier);
+    }
+
+    // Private variables
+    private final TraceFile trace;
+    private final int nodeCount;
+    private final int[] order;
+    private final int interval;
+    private final byte[][] snapshots;
+    private final byte[] state;
+    private int applied = 0;
+    private long time = 0;
+
+
+    /**
+     * Prepares the replay of a trace
+     *
+     * @param trace Recorded run
+     * @param graph Freshly loaded graph of the run, gives the starting
+     *              statuses that are set before the recording starts
+     */
+    TraceReplay(TraceFile trace, Graph graph) {
+        this.trace = trace;
+        this.nodeCount = trace.getNodeCount();
+        this.order = orderRecords(trace);
+        this.interval = Math.max(MIN_SNAPSHOT_INTERVAL, nodeCount);
+
+        state = new byte[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            state[i] = (byte) graph.getNode(i).getStatus().ordinal();
+        }
+
+        // Play it all once, saving the state every interval
+        snapshots = new byte[order.length / interval + 1][];
+        for (int i = 0; i < order.length; i++) {
+            if (i % interval == 0) snapshots[i / interval] = state.clone();
+            apply(i);
+        }
+        if (order.length % interval == 0) snapshots[order.length / interval] = state.clone();
+
+        // Start at the beginning, the clocks of the runs start at 0
+        System.arraycopy(snapshots[0], 0, state, 0, nodeCount);
+    }
+
+    /**
+     * Picks the records the replay shows and orders them by simulation time,
+     * then by when they were recorded. The event simulation writes them in
+     * order already, threaded runs interleave the buffers of their threads.
+     *
+     * @param trace Recorded run
+     * @return Indices of the records in the order they happened
+     */
+    private static int[] orderRecords(TraceFile trace) {
+        int[] kept = new int[trace.getRecordCount()];
+        int count = 0;
+        boolean sorted = true;
+        for (int i = 0; i < trace.getRecordCount(); i++) {
+            int kind = trace.getKind(i);
+            if (kind != TraceFile.STATUS && kind != TraceFile.AGENT && kind != TraceFile.DELIVERED) continue;
+            if (count > 0 && sorted && compare(trace, kept[count - 1], i) > 0) sorted = false;
+            kept[count++] = i;
+        }
+        kept = Arrays.copyOf(kept, count);
+        if (sorted) return kept;
+
+        Integer[] boxed = new Integer[count];
+        for (int i = 0; i < count; i++) boxed[i] = kept[i];
+        Arrays.sort(boxed, (x, y) -> compare(trace, x, y));
+        for (int i = 0; i < count; i++) kept[i] = boxed[i];
+        return kept;
+    }
+
+    /**
+     * Compares two records by simulation time, then by recording time
+     *
+     * @param trace Recorded run
+     * @param x Index of a record
+     * @param y Index of another record
+     * @return Negative if x happened first, positive if y did
+     */
+    private static int compare(TraceFile trace, int x, int y) {
+        int byTime = Long.compare(trace.getTime(x), trace.getTime(y));
+        return byTime != 0 ? byTime : Long.compare(trace.getNanos(x), trace.getNanos(y));
+    }
+
+    /**
+     * Gets the amount of nodes of the replayed graph
+     *
+     * @return Node count
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Gets the amount of records the replay shows
+     *
+     * @return Record count
+     */
+    public int getEventCount() {
+        return order.length;
+    }
+
+    /**
+     * Gets the time of the last record
+     *
+     * @return Simulation time in milliseconds
+     */
+    public long getEndTime() {
+        return order.length == 0 ? 0 : trace.getTime(order[order.length - 1]);
+    }
+
+    /**
+     * Gets the time shown
+     *
+     * @return Simulation time in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the status of a node at the time shown
+     *
+     * @param node Node ID
+     * @return NodeStatus
+     */
+    public NodeStatus getStatus(int node) {
+        return STATUSES[state[node] & STATUS_MASK];
+    }
+
+    /**
+     * Checks if an agent came to a node by the time shown
+     *
+     * @param node Node ID
+     * @return true if the node has or had an agent
+     */
+    public boolean hasAgent(int node) {
+        return (state[node] & AGENT_BIT) != 0;
+    }
+
+    /**
+     * Shows the state at a time, everything recorded at or before it
+     *
+     * @param time Simulation time in milliseconds
+     * @param listener Told about every node that may have changed
+     */
+    public void seek(long time, Listener listener) {
+        this.time = time;
+        int target = countUntil(time);
+
+        // Playing forward, apply the records in between
+        if (target >= applied && target - applied <= interval) {
+            for (; applied < target; applied++) {
+                apply(applied);
+                notify(applied, listener, true);
+            }
+            return;
+        }
+
+        // Otherwise start from the snapshot before the target. Only nodes of
+        // the records between the old and the new state can differ.
+        int snapshot = target / interval;
+        int from = Math.min(applied, snapshot * interval);
+        int to = Math.max(applied, target);
+
+        System.arraycopy(snapshots[snapshot], 0, state, 0, nodeCount);
+        for (applied = snapshot * interval; applied < target; applied++) apply(applied);
+
+        if (to - from > nodeCount) {
+            for (int node = 0; node < nodeCount; node++) listener.nodeChanged(node);
+        } else {
+            for (int i = from; i < to; i++) notify(i, listener, false);
+        }
+    }
+
+    /**
+     * Counts the records at or before a time
+     *
+     * @param time Simulation time in milliseconds
+     * @return Index of the first record after the time
+     */
+    private int countUntil(long time) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (trace.getTime(order[middle]) <= time) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Applies one record to the state of its node
+     *
+     * @param event Index into the ordered records
+     */
+    private void apply(int event) {
+        int record = order[event];
+        int node = trace.getA(record);
+        switch (trace.getKind(record)) {
+            case TraceFile.STATUS:
+                state[node] = (byte) ((state[node] & AGENT_BIT) | trace.getC(record));
+                break;
+            case TraceFile.AGENT:
+                state[node] |= AGENT_BIT;
+                break;
+        }
+    }
+
+    /**
+     * Tells the listener about one record
+     *
+     * @param event Index into the ordered records
+     * @param listener Listener of the seek
+     * @param delivered If delivered reports are told
+     */
+    private void notify(int event, Listener listener, boolean delivered) {
+        int record = order[event];
+        if (trace.getKind(record) != TraceFile.DELIVERED) {
+            listener.nodeChanged(trace.getA(record));
+        } else if (delivered) {
+            listener.reportDelivered(trace.getA(record), trace.getB(record), trace.getC(record));
+        }
+    }
+}
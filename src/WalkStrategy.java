@@ -0,0 +1,238 @@
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How the first agent finds its way from the base station to the fire.
+ *
+ * Every strategy is a loop, none of them recurses, and every step is
+ * counted so the cost of a deployment can be compared. A walk never enters
+ * a RED node and ends on the first YELLOW node it reaches.
+ */
+public interface WalkStrategy {
+
+    // Steps of the random and gradient walks before they fall back
+    int DEFAULT_STEPS = 10000;
+
+    /**
+     * Walks from a node to a node in danger
+     *
+     * @param start Node the walk starts on
+     * @return YELLOW node reached, null if there is none to be reached
+     */
+    GraphNode walk(GraphNode start);
+
+    /**
+     * Gets the amount of steps taken by every walk so far
+     *
+     * @return Nodes visited
+     */
+    long getSteps();
+
+    /**
+     * Breadth first search to the closest YELLOW node, counting every node
+     * looked at as a step
+     *
+     * @return Nearest walk
+     */
+    static WalkStrategy nearest() {
+        return new NearestWalk();
+    }
+
+    /**
+     * Random walk that gives up after a number of steps and then searches
+     * for the closest YELLOW node instead
+     *
+     * @param maxSteps Steps before falling back
+     * @return Random walk
+     */
+    static WalkStrategy random(int maxSteps) {
+        return new RandomWalk(maxSteps);
+    }
+
+    /**
+     * Walk that always moves to the neighbor closest to the fires the graph
+     * started with, searching for the closest YELLOW node once it is stuck
+     *
+     * @param topology Topology with the fires
+     * @param maxSteps Steps before falling back
+     * @return Gradient walk
+     */
+    static WalkStrategy gradient(Topology topology, int maxSteps) {
+        return new GradientWalk(topology, maxSteps);
+    }
+
+    /**
+     * Searches for the closest YELLOW node from where a walk stopped, or
+     * from its start if it got stuck somewhere with no way out
+     *
+     * @param fallback Search to use
+     * @param start Node the walk started on
+     * @param stopped Node the walk stopped on
+     * @return YELLOW node reached, null if there is none to be reached
+     */
+    static GraphNode fallBack(NearestWalk fallback, GraphNode start, GraphNode stopped) {
+        GraphNode found = fallback.walk(stopped);
+        if (found == null && stopped != start) found = fallback.walk(start);
+        return found;
+    }
+
+    /**
+     * Breadth first search over the nodes that are not on fire
+     */
+    class NearestWalk implements WalkStrategy {
+
+        private final AtomicLong steps = new AtomicLong();
+
+
+        @Override
+        public GraphNode walk(GraphNode start) {
+            NodeSet seen = new NodeSet();
+            ArrayDeque<GraphNode> queue = new ArrayDeque<>();
+            seen.add(start.getId());
+            queue.add(start);
+
+            long count = 0;
+            try {
+                while (!queue.isEmpty()) {
+                    GraphNode node = queue.poll();
+                    count++;
+                    if (node.getStatus() == NodeStatus.YELLOW) return node;
+
+                    for (GraphNode n : node.getAdjacentNodes()) {
+                        if (n.getStatus() != NodeStatus.RED && !seen.contains(n.getId())) {
+                            seen.add(n.getId());
+                            queue.add(n);
+                        }
+                    }
+                }
+                return null;
+            } finally {
+                steps.addAndGet(count);
+            }
+        }
+
+        @Override
+        public long getSteps() {
+            return steps.get();
+        }
+    }
+
+    /**
+     * The walk of the original agents, now with a limit
+     */
+    class RandomWalk implements WalkStrategy {
+
+        private final int maxSteps;
+        private final NearestWalk fallback = new NearestWalk();
+        private final AtomicLong steps = new AtomicLong();
+
+
+        RandomWalk(int maxSteps) {
+            this.maxSteps = maxSteps;
+        }
+
+        @Override
+        public GraphNode walk(GraphNode start) {
+            GraphNode node = start;
+            GraphNode[] open = new GraphNode[8];
+
+            for (int step = 0; step < maxSteps; step++) {
+                steps.incrementAndGet();
+                if (node.getStatus() == NodeStatus.YELLOW) return node;
+
+                // Only pick among the neighbors that are not on fire, so a
+                // step is never wasted on staying put
+                GraphNode[] adjacent = node.getAdjacentNodes();
+                if (open.length < adjacent.length) open = new GraphNode[adjacent.length];
+                int count = 0;
+                for (GraphNode n : adjacent) {
+                    if (n.getStatus() != NodeStatus.RED) open[count++] = n;
+                }
+                if (count == 0) break;
+
+                node = open[start.getContext().getRandom().nextInt(count)];
+            }
+
+            return fallBack(fallback, start, node);
+        }
+
+        @Override
+        public long getSteps() {
+            return steps.get() + fallback.getSteps();
+        }
+    }
+
+    /**
+     * Greedy walk downhill on the distance to the nearest starting fire
+     */
+    class GradientWalk implements WalkStrategy {
+
+        private final int[] fireXs;
+        private final int[] fireYs;
+        private final int maxSteps;
+        private final NearestWalk fallback = new NearestWalk();
+        private final AtomicLong steps = new AtomicLong();
+
+
+        GradientWalk(Topology topology, int maxSteps) {
+            int[] fires = topology.getFires();
+            fireXs = new int[fires.length];
+            fireYs = new int[fires.length];
+            for (int i = 0; i < fires.length; i++) {
+                fireXs[i] = topology.getX(fires[i]);
+                fireYs[i] = topology.getY(fires[i]);
+            }
+            this.maxSteps = maxSteps;
+        }
+
+        @Override
+        public GraphNode walk(GraphNode start) {
+            NodeSet visited = new NodeSet();
+            GraphNode node = start;
+
+            for (int step = 0; step < maxSteps; step++) {
+                steps.incrementAndGet();
+                if (node.getStatus() == NodeStatus.YELLOW) return node;
+                visited.add(node.getId());
+
+                // Closest neighbor not yet visited, even if it is uphill, so
+                // the walk gets around obstacles instead of stopping there
+                GraphNode best = null;
+                long bestDistance = Long.MAX_VALUE;
+                for (GraphNode n : node.getAdjacentNodes()) {
+                    if (n.getStatus() == NodeStatus.RED || visited.contains(n.getId())) continue;
+                    long distance = distance(n.getCoordinate());
+                    if (distance < bestDistance) {
+                        best = n;
+                        bestDistance = distance;
+                    }
+                }
+                if (best == null) break;
+                node = best;
+            }
+
+            return fallBack(fallback, start, node);
+        }
+
+        /**
+         * Gets the squared distance to the closest starting fire
+         *
+         * @param c Coordinate of a node
+         * @return Squared distance, 0 if there are no fires
+         */
+        private long distance(Coordinate c) {
+            long best = fireXs.length == 0 ? 0 : Long.MAX_VALUE;
+            for (int i = 0; i < fireXs.length; i++) {
+                long dx = c.getX() - fireXs[i];
+                long dy = c.getY() - fireYs[i];
+                best = Math.min(best, dx * dx + dy * dy);
+            }
+            return best;
+        }
+
+        @Override
+        public long getSteps() {
+            return steps.get() + fallback.getSteps();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reading graph text and the line numbers of the errors in it
+ */
+class GraphParserTest {
+
+    private static Topology parse(String text) throws IOException {
+        return new GraphParser(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII))).parse();
+    }
+
+    /**
+     * Parses text that must fail and checks the line the error is on
+     */
+    private static GraphFormatException fails(int line, String text) {
+        GraphFormatException e = assertThrows(GraphFormatException.class, () -> parse(text));
+        assertEquals(line, e.getLine());
+        assertTrue(e.getMessage().startsWith("line " + line + ": "), e.getMessage());
+        return e;
+    }
+
+    @Test
+    void readsNodesEdgesStationAndFire() throws IOException {
+        Topology topology = parse("node 0 0\n"
+                + "node 1 0\n"
+                + "edge 1 0 2 0\n"
+                + "station 0 0\n"
+                + "fire 2 0\n");
+
+        // The edge line adds the node it names that is not there yet
+        assertEquals(3, topology.getNodeCount());
+        assertEquals(1, topology.getEdgeCount());
+        int station = topology.find(0, 0);
+        int fire = topology.find(2, 0);
+        assertEquals(station, topology.getStation());
+        assertArrayEquals(new int[] {fire}, topology.getFires());
+        assertEquals(1, topology.getDegree(topology.find(1, 0)));
+        assertEquals(0, topology.getDegree(station));
+    }
+
+    @Test
+    void skipsBlankLinesAndReadsAnyLineEnd() throws IOException {
+        Topology topology = parse("\n  node 0 0\r\n\tnode -1 5 \r\n\nedge 0 0 -1 5\nstation -1 5");
+        assertEquals(2, topology.getNodeCount());
+        assertEquals(1, topology.getEdgeCount());
+        assertEquals(topology.find(-1, 5), topology.getStation());
+        assertEquals(5, topology.getY(topology.getStation()));
+    }
+
+    @Test
+    void unknownKeywordIsAnError() {
+        GraphFormatException e = fails(3, "node 0 0\n\nnod 1 0\nstation 0 0\n");
+        assertEquals("line 3: unknown line type 'nod'", e.getMessage());
+    }
+
+    @Test
+    void wrongAmountOfNumbers() {
+        assertEquals("line 2: expected 'edge x1 y1 x2 y2'",
+                fails(2, "node 0 0\nedge 0 0 1\nstation 0 0\n").getMessage());
+        assertEquals("line 1: expected 'node x y'",
+                fails(1, "node 0 0 0\nstation 0 0\n").getMessage());
+        fails(2, "node 0 0\nstation 0\n");
+        fails(2, "node 0 0\nfire\nstation 0 0\n");
+    }
+
+    @Test
+    void badNumbers() {
+        assertEquals("line 2: expected a number",
+                fails(2, "node 0 0\nnode 1 x\nstation 0 0\n").getMessage());
+        fails(1, "node 0 1.5\nstation 0 0\n");
+        fails(1, "node - 0\nstation 0 0\n");
+        fails(1, "node 99999999999 0\nstation 0 0\n");
+    }
+
+    @Test
+    void missingStation() {
+        assertEquals("line 2: the graph has no station",
+                fails(2, "node 0 0\nnode 1 0\n").getMessage());
+    }
+
+    @Test
+    void stationAndFireMustBeNodes() {
+        // Found after the whole file is read, but told on their own lines
+        assertEquals("line 2: station 5 5 is not a node of the graph",
+                fails(2, "node 0 0\nstation 5 5\nnode 1 0\n").getMessage());
+        assertEquals("line 3: fire 1 1 is not a node of the graph",
+                fails(3, "node 0 0\nstation 0 0\nfire 1 1\nnode 1 0\n").getMessage());
+    }
+}
@@ -0,0 +1,170 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * What every OverflowPolicy does with a packet that comes to a full mailbox
+ */
+class MailboxTest {
+
+    private int nextId = 0;
+
+    /**
+     * Makes the report of a node with a status
+     */
+    private Packet report(int node, NodeStatus status) {
+        GraphNode gn = new GraphNode(new Coordinate(node, 0), null, node);
+        gn.restoreStatus(status);
+        return Packet.report(gn, nextId++);
+    }
+
+    /**
+     * Makes a batch of the reports of some nodes
+     */
+    private Packet batch(int... nodes) {
+        List<Packet> reports = new ArrayList<>();
+        for (int node : nodes) reports.add(report(node, NodeStatus.YELLOW));
+        return Packet.batch(reports, new GraphNode(new Coordinate(0, 0), null, 0), nextId++);
+    }
+
+    private static Mailbox full(OverflowPolicy policy, Packet... waiting) {
+        Mailbox mailbox = new Mailbox();
+        mailbox.setLimit(waiting.length, policy);
+        for (Packet p : waiting) assertNull(mailbox.offer(p));
+        return mailbox;
+    }
+
+    private static List<Packet> drain(Mailbox mailbox) {
+        List<Packet> batch = new ArrayList<>();
+        mailbox.drainTo(batch);
+        return batch;
+    }
+
+    @Test
+    void unboundedTakesEverything() {
+        Mailbox mailbox = new Mailbox();
+        for (int i = 0; i < 100; i++) assertNull(mailbox.offer(report(i, NodeStatus.GREEN)));
+        assertEquals(100, mailbox.size());
+        assertEquals(100, drain(mailbox).size());
+        assertTrue(mailbox.isEmpty());
+    }
+
+    @Test
+    void dropOldestDropsTheFirstMessage() {
+        Packet first = report(1, NodeStatus.YELLOW);
+        Packet second = report(2, NodeStatus.YELLOW);
+        Mailbox mailbox = full(OverflowPolicy.DROP_OLDEST, first, second);
+
+        Packet third = report(3, NodeStatus.YELLOW);
+        assertSame(first, mailbox.offer(third));
+        assertEquals(Arrays.asList(second, third), drain(mailbox));
+        assertEquals(1, mailbox.getDropped());
+    }
+
+    @Test
+    void dropDuplicateReplacesTheSameReport() {
+        Packet waiting = report(1, NodeStatus.YELLOW);
+        Packet other = report(2, NodeStatus.YELLOW);
+        Mailbox mailbox = full(OverflowPolicy.DROP_DUPLICATE_STATUS, waiting, other);
+
+        Packet again = report(1, NodeStatus.YELLOW);
+        assertSame(waiting, mailbox.offer(again));
+        assertEquals(Arrays.asList(other, again), drain(mailbox));
+    }
+
+    @Test
+    void dropDuplicateKeepsOtherStatusesAndNodes() {
+        Packet yellow = report(1, NodeStatus.YELLOW);
+        Packet other = report(2, NodeStatus.RED);
+        Mailbox mailbox = full(OverflowPolicy.DROP_DUPLICATE_STATUS, yellow, other);
+
+        Packet red = report(1, NodeStatus.RED);
+        assertSame(red, mailbox.offer(red));
+        Packet otherNode = report(3, NodeStatus.YELLOW);
+        assertSame(otherNode, mailbox.offer(otherNode));
+        assertEquals(Arrays.asList(yellow, other), drain(mailbox));
+        assertEquals(2, mailbox.getDropped());
+    }
+
+    @Test
+    void dropDuplicateNeverMatchesBatches() {
+        // Both say "Batch of 2 reports" but carry different reports
+        Packet waiting = batch(1, 2);
+        Mailbox mailbox = full(OverflowPolicy.DROP_DUPLICATE_STATUS, waiting);
+
+        Packet other = batch(3, 4);
+        assertEquals(waiting.getReport(), other.getReport());
+        assertSame(other, mailbox.offer(other));
+        assertEquals(Arrays.asList(waiting), drain(mailbox));
+
+        // A single report is not a duplicate of a batch that holds it either
+        mailbox = full(OverflowPolicy.DROP_DUPLICATE_STATUS, batch(1, 2));
+        Packet single = report(1, NodeStatus.YELLOW);
+        assertSame(single, mailbox.offer(single));
+    }
+
+    @Test
+    void blockDropsWhenTheSenderMayNotWait() {
+        Packet waiting = report(1, NodeStatus.YELLOW);
+        Mailbox mailbox = full(OverflowPolicy.BLOCK, waiting);
+
+        Packet late = report(2, NodeStatus.YELLOW);
+        assertSame(late, mailbox.offer(late, false));
+        assertEquals(1, mailbox.getDropped());
+        assertEquals(0, mailbox.getBlocked());
+    }
+
+    @Test
+    void blockWaitsForRoom() throws Exception {
+        Packet waiting = report(1, NodeStatus.YELLOW);
+        Mailbox mailbox = full(OverflowPolicy.BLOCK, waiting);
+
+        Packet late = report(2, NodeStatus.YELLOW);
+        CompletableFuture<Packet> sent = CompletableFuture.supplyAsync(() -> mailbox.offer(late));
+        while (mailbox.getBlocked() == 0) Thread.sleep(1);
+
+        assertEquals(Arrays.asList(waiting), drain(mailbox));
+        assertNull(sent.get(Mailbox.BLOCK_MILLIS * 5, TimeUnit.MILLISECONDS));
+        assertEquals(Arrays.asList(late), drain(mailbox));
+        assertEquals(0, mailbox.getDropped());
+    }
+
+    @Test
+    void blockGivesUpAfterTheLimit() {
+        Mailbox mailbox = full(OverflowPolicy.BLOCK, report(1, NodeStatus.YELLOW));
+
+        Packet late = report(2, NodeStatus.YELLOW);
+        assertSame(late, mailbox.offer(late));
+        assertEquals(1, mailbox.getBlocked());
+        assertEquals(1, mailbox.getDropped());
+    }
+
+    @Test
+    void rerouteHandsThePacketBack() {
+        Packet waiting = batch(1, 2);
+        Mailbox mailbox = full(OverflowPolicy.REROUTE, waiting);
+
+        Packet other = batch(3, 4);
+        assertSame(other, mailbox.offer(other));
+        assertEquals(1, mailbox.getRerouted());
+        assertEquals(0, mailbox.getDropped());
+        assertEquals(Arrays.asList(waiting), drain(mailbox));
+    }
+
+    @Test
+    void peakCountsTheMostWaiting() {
+        Mailbox mailbox = full(OverflowPolicy.DROP_OLDEST,
+                report(1, NodeStatus.YELLOW), report(2, NodeStatus.YELLOW));
+        mailbox.offer(report(3, NodeStatus.YELLOW));
+        assertEquals(2, mailbox.getPeak());
+    }
+}
@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The loader cuts a file into chunks, the topology must still be the same
+ * as the one GraphParser reads in a single pass
+ */
+class ParallelGraphLoaderTest {
+
+    // Several chunks of at least a megabyte each
+    private static final int LINES = 300_000;
+
+    private static ForkJoinPool pool;
+
+    @TempDir
+    Path folder;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    /**
+     * Writes a random graph whose edges keep naming nodes that were seen in
+     * other chunks, some for the first time
+     *
+     * @param name Name of the file in the temp folder
+     * @param bad Line to write garbage on, 0 for none
+     */
+    private File write(String name, int bad) throws IOException {
+        File file = folder.resolve(name).toFile();
+        Random random = new Random(11);
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath()))) {
+            out.println("station 0 0");
+            out.println("node 0 0");
+            for (int line = 3; line < LINES; line++) {
+                if (line == bad) {
+                    out.println("edge 1 2 x 4");
+                } else if (line % 1000 == 0) {
+                    out.println();
+                } else if (line % 97 == 0) {
+                    out.println("node " + random.nextInt(2000) + " " + random.nextInt(2000));
+                } else {
+                    out.println("edge " + random.nextInt(2000) + " " + random.nextInt(2000)
+                            + " " + random.nextInt(2000) + " " + random.nextInt(2000));
+                }
+            }
+            out.println("fire 0 0");
+        }
+        assertTrue(file.length() > 4 << 20, "file spans several chunks");
+        return file;
+    }
+
+    @Test
+    void sameTopologyAsTheSequentialParser() throws IOException {
+        File file = write("graph.txt", 0);
+        Topology expected = GraphParser.parse(file);
+        Topology actual = new ParallelGraphLoader(pool).read(file);
+
+        assertEquals(expected.getNodeCount(), actual.getNodeCount());
+        assertEquals(expected.getEdgeCount(), actual.getEdgeCount());
+        assertEquals(expected.getStation(), actual.getStation());
+        assertArrayEquals(expected.getFires(), actual.getFires());
+        for (int node = 0; node < expected.getNodeCount(); node++) {
+            assertEquals(expected.getX(node), actual.getX(node));
+            assertEquals(expected.getY(node), actual.getY(node));
+            assertEquals(expected.getStart(node), actual.getStart(node));
+            assertEquals(expected.getEnd(node), actual.getEnd(node));
+        }
+        for (int j = 0; j < expected.getEnd(expected.getNodeCount() - 1); j++) {
+            assertEquals(expected.getTarget(j), actual.getTarget(j));
+        }
+    }
+
+    @Test
+    void errorsHaveTheirLineInTheWholeFile() throws IOException {
+        int bad = LINES - 100;
+        File file = write("bad.txt", bad);
+
+        GraphFormatException sequential = assertThrows(GraphFormatException.class,
+                () -> GraphParser.parse(file));
+        GraphFormatException parallel = assertThrows(GraphFormatException.class,
+                () -> new ParallelGraphLoader(pool).read(file));
+        assertEquals(bad, sequential.getLine());
+        assertEquals(bad, parallel.getLine());
+        assertEquals(sequential.getMessage(), parallel.getMessage());
+    }
+}
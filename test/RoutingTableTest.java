@@ -0,0 +1,134 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Routes of the table before and after nodes burn
+ */
+class RoutingTableTest {
+
+    /**
+     * Builds a grid of nodes with the station in the top left corner
+     */
+    private static Graph grid(int width, int height) {
+        Topology.Builder builder = new Topology.Builder();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) builder.addNode(x, y);
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int node = y * width + x;
+                if (x + 1 < width) builder.addEdge(node, node + 1);
+                if (y + 1 < height) builder.addEdge(node, node + width);
+            }
+        }
+        builder.setStation(0);
+        Graph graph = new Graph(builder.build());
+        graph.getContext().setRoutingTable(new RoutingTable(graph));
+        return graph;
+    }
+
+    /**
+     * Hop counts of a fresh search from the station around every RED node
+     */
+    private static int[] shortestHops(Graph graph) {
+        int count = graph.getNodeCount();
+        int[] hops = new int[count];
+        Arrays.fill(hops, RoutingTable.UNREACHABLE);
+        int[] queue = new int[count];
+        int head = 0, tail = 0;
+        hops[graph.getStation().getId()] = 0;
+        queue[tail++] = graph.getStation().getId();
+        while (head < tail) {
+            GraphNode node = graph.getNode(queue[head++]);
+            for (GraphNode n : node.getAdjacentNodes()) {
+                if (hops[n.getId()] == RoutingTable.UNREACHABLE && n.getStatus() != NodeStatus.RED) {
+                    hops[n.getId()] = hops[node.getId()] + 1;
+                    queue[tail++] = n.getId();
+                }
+            }
+        }
+        return hops;
+    }
+
+    /**
+     * Checks every node that is not RED has the shortest route and that it
+     * leads to the station one hop less at a time
+     */
+    private static void assertShortestRoutes(Graph graph) {
+        int[] expected = shortestHops(graph);
+        for (GraphNode node : graph.getNodes()) {
+            if (node.getStatus() == NodeStatus.RED || node == graph.getStation()) continue;
+
+            assertEquals(expected[node.getId()], node.getHops(), "hops of " + node);
+            GraphNode next = node.getNextHop();
+            if (expected[node.getId()] == RoutingTable.UNREACHABLE) {
+                assertNull(next, "next hop of " + node);
+            } else {
+                assertNotNull(next, "next hop of " + node);
+                assertNotEquals(NodeStatus.RED, next.getStatus());
+                assertEquals(node.getHops() - 1, next.getHops());
+            }
+        }
+    }
+
+    @Test
+    void startsWithTheShortestRoutes() {
+        Graph graph = grid(5, 4);
+        assertShortestRoutes(graph);
+        assertEquals(7, graph.getNode(4, 3).getHops());
+    }
+
+    @Test
+    void repairsTheRoutesThroughABurntNode() {
+        Graph graph = grid(5, 4);
+        GraphNode burnt = graph.getNode(1, 0);
+        GraphNode behind = graph.getNode(2, 0);
+        assertSame(burnt, behind.getNextHop());
+
+        burnt.setStatus(NodeStatus.RED);
+        assertShortestRoutes(graph);
+        assertEquals(4, behind.getHops());
+    }
+
+    @Test
+    void nodesCutOffLoseTheirRoute() {
+        Graph graph = grid(3, 3);
+        graph.getNode(1, 0).setStatus(NodeStatus.RED);
+        graph.getNode(0, 1).setStatus(NodeStatus.RED);
+
+        assertShortestRoutes(graph);
+        GraphNode corner = graph.getNode(2, 2);
+        assertEquals(RoutingTable.UNREACHABLE, corner.getHops());
+        assertNull(graph.getContext().getRoutingTable().getNextHop(corner));
+    }
+
+    @Test
+    void aBurningNodeStillReachesANeighbor() {
+        Graph graph = grid(3, 3);
+        GraphNode burning = graph.getNode(1, 1);
+        burning.setStatus(NodeStatus.RED);
+
+        // It lost its own route, but the closest neighbor with one takes it
+        GraphNode next = graph.getContext().getRoutingTable().getNextHop(burning);
+        assertNotNull(next);
+        assertEquals(1, next.getHops());
+    }
+
+    @Test
+    void staysShortestOverManyBurns() {
+        Graph graph = grid(20, 20);
+        Random random = new Random(7);
+        for (int i = 0; i < 120; i++) {
+            graph.getNode(1 + random.nextInt(graph.getNodeCount() - 1)).setStatus(NodeStatus.RED);
+            assertShortestRoutes(graph);
+        }
+    }
+}